@@ -0,0 +1,246 @@
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws a GameGUI's frames from a thread of its own at a fixed rate, onto a canvas through a BufferStrategy,
+ * instead of waiting for Swing to coalesce repaint requests.
+ * <P>
+ * Every frame is the whole window drawn into the strategy's back buffer and shown with a page flip where the
+ * graphics pipeline supports one (a blit otherwise), so a change reaches the screen at most one frame period after
+ * it is shown to the GameGUI, however busy the event thread is. Frames are paced to a cap; a frame that runs late
+ * pushes the schedule back rather than being followed by a burst of catch-up frames.
+ * <P>
+ * The player sprite glides between cells: when a snapshot moves the player, the sprite travels from where it is
+ * drawn to the new cell over MOVE_MILLIS, and the viewport follows it. A new or replayed board puts the sprite
+ * straight at its cell.
+ * <P>
+ * With a GameMetrics set, the time between frames is recorded as the frame interval, and the time to draw and show
+ * each frame as the paint time, so render cost can be profiled apart from the game logic.
+ *
+ * @version 1.0
+ */
+public class ActiveRenderer extends Canvas implements Runnable
+{
+  static final long serialVersionUID = 1L;
+
+  /** How long the player sprite takes to glide to a new cell. */
+  public static final int MOVE_MILLIS = 120;
+  private static final long MOVE_NANOS = MOVE_MILLIS * 1000000L;
+
+  private final GameGUI gui;
+  private final long periodNanos;
+  // frame intervals are recorded here when set
+  private volatile GameMetrics metrics;
+  private volatile boolean running;
+  private Thread thread;
+  private BufferStrategy strategy;
+
+  // the glide in progress, in board pixels: started at from, heading to to; only used on the render thread
+  private double fromX;
+  private double fromY;
+  private int toX;
+  private int toY;
+  private long moveStart;
+  private int boardVersion = -1;
+  private long lastFrame;
+
+  /**
+   * Create a canvas that draws a GameGUI's frames. Nothing is drawn until the canvas is in a visible window and
+   * start() is called.
+   * <P>
+   * precondition: fps is positive
+   * <P>
+   * @param gui the component whose snapshots and images are drawn
+   * @param fps most frames to draw per second
+   */
+  public ActiveRenderer(GameGUI gui, int fps)
+  {
+    if (fps <= 0)
+      throw new IllegalArgumentException("fps must be positive: " + fps);
+    this.gui = gui;
+    this.periodNanos = 1000000000L / fps;
+    setPreferredSize(gui.getPreferredSize());
+    // every frame is drawn by the render thread, so the system's paint requests have nothing to do
+    setIgnoreRepaint(true);
+  }
+
+  /**
+   * Record the interval between frames.
+   * <P>
+   * @param metrics where to record frame intervals, or null to stop
+   */
+  public void setMetrics(GameMetrics metrics)
+  {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Create the buffer strategy and start drawing frames.
+   * <P>
+   * precondition: the canvas is in a window that is showing
+   */
+  public synchronized void start()
+  {
+    if (thread != null)
+      return;
+    // two buffers flipped in video memory if the pipeline can, otherwise whatever double buffering it has
+    try {
+      createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true),
+                                                     BufferCapabilities.FlipContents.UNDEFINED));
+    } catch (AWTException e) {
+      createBufferStrategy(2);
+    }
+    strategy = getBufferStrategy();
+    running = true;
+    thread = new Thread(this, "active-renderer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stop drawing frames. Waits for the frame being drawn to finish, except on the event thread, which the render
+   * thread may itself be waiting for.
+   */
+  public void stop()
+  {
+    Thread t;
+    synchronized (this)
+    {
+      running = false;
+      t = thread;
+      thread = null;
+    }
+    if (t == null)
+      return;
+    LockSupport.unpark(t);
+    if (!java.awt.EventQueue.isDispatchThread())
+    {
+      try {
+        t.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Return true if frames are shown by flipping pages rather than copying the back buffer.
+   */
+  public boolean isPageFlipping()
+  {
+    BufferStrategy s = strategy;
+    return s != null && s.getCapabilities().isPageFlipping();
+  }
+
+  /**
+   * For internal use and should not be called directly: the render loop.
+   */
+  @Override
+  public void run()
+  {
+    long next = System.nanoTime();
+    try {
+      while (running)
+      {
+        renderFrame();
+        next += periodNanos;
+        long now = System.nanoTime();
+        if (now - next > periodNanos)
+        {
+          // more than a frame behind: skip the missed frames instead of drawing them back to back
+          next = now;
+          continue;
+        }
+        while (running && (now = System.nanoTime()) < next)
+          LockSupport.parkNanos(next - now);
+      }
+    } catch (IllegalStateException e) {
+      // the window was closed under the render thread
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Draw the latest snapshot into the back buffer and show it, redrawing if the buffers' contents were lost
+   */
+  private void renderFrame()
+  {
+    long start = System.nanoTime();
+    GameMetrics m = metrics;
+    if (m != null && lastFrame != 0)
+      m.recordFrame(start - lastFrame);
+    lastFrame = start;
+
+    GameSnapshot v = gui.getView();
+    glide(v, start);
+    double t = progress(start);
+    int x = (int)Math.round(fromX + (toX - fromX) * t);
+    int y = (int)Math.round(fromY + (toY - fromY) * t);
+    if (t >= 1)
+    {
+      fromX = toX;
+      fromY = toY;
+    }
+
+    do
+    {
+      do
+      {
+        Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+        try {
+          gui.drawFrame(g, v, x, y);
+        } finally {
+          g.dispose();
+        }
+      } while (strategy.contentsRestored());
+      strategy.show();
+    } while (strategy.contentsLost());
+    // flush the window system's queue, or some systems show frames in bursts
+    Toolkit.getDefaultToolkit().sync();
+    gui.finishFrame(start);
+  }
+
+  /*
+   * Start a glide from the sprite's drawn position when the snapshot moves the player; jump to the cell on a new
+   * or replayed board
+   */
+  private void glide(GameSnapshot v, long now)
+  {
+    int x = v.getPlayerX();
+    int y = v.getPlayerY();
+    if (v.getBoardVersion() != boardVersion)
+    {
+      boardVersion = v.getBoardVersion();
+      fromX = x;
+      fromY = y;
+      toX = x;
+      toY = y;
+      moveStart = now - MOVE_NANOS;
+    }
+    else if (x != toX || y != toY)
+    {
+      double t = progress(now);
+      fromX += (toX - fromX) * t;
+      fromY += (toY - fromY) * t;
+      toX = x;
+      toY = y;
+      moveStart = now;
+    }
+  }
+
+  /*
+   * How far along the glide is, from 0 to 1, eased in and out so the sprite doesn't jolt into motion or stop dead
+   */
+  private double progress(long now)
+  {
+    double t = Math.min(1.0, (double)(now - moveStart) / MOVE_NANOS);
+    return t * t * (3 - 2 * t);
+  }
+}
@@ -0,0 +1,237 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Loads image assets in the background and caches them for every window in the JVM.
+ * <P>
+ * load() starts reading an image file on a small pool of daemon threads, so several files decode in parallel and
+ * nobody waits for them; each image is converted to the screen's compatible format once, so drawing it is a
+ * straight copy. Images are cached by file name, and asking for a file again, from any thread or any GameGUI,
+ * returns the same future or image.
+ * <P>
+ * Drawing code calls get() or getScaled(), which never block and never return null: until a file has loaded, or
+ * if it can't be read, they return a placeholder generated by the caller's Placeholder at the size it asked for.
+ * Callers that want to replace placeholders as soon as the real image arrives attach to the future from load().
+ *
+ * @version 1.0
+ */
+public class AssetManager
+{
+  /**
+   * Draws a stand-in for an image that isn't available.
+   */
+  public interface Placeholder
+  {
+    /**
+     * Paint the placeholder into a cleared, translucent image of the given size.
+     */
+    void paint(Graphics2D g, int width, int height);
+  }
+
+  // decoding is CPU-bound, but a couple of threads also overlap the file reads on small machines
+  private static final int LOADER_THREADS = Math.min(4, Math.max(2, Runtime.getRuntime().availableProcessors()));
+  private static final AssetManager SHARED = new AssetManager(Paths.get(""));
+
+  private final Path dir;
+  private final ExecutorService loaders;
+  // file name -> the compatible image, completed exceptionally if the file can't be read
+  private final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> images =
+      new ConcurrentHashMap<String, CompletableFuture<BufferedImage>>();
+  // file name -> nanoseconds it took to read and convert
+  private final ConcurrentHashMap<String, Long> loadTimes = new ConcurrentHashMap<String, Long>();
+  // "name@WxH" -> scaled images and placeholders
+  private final ConcurrentHashMap<String, BufferedImage> derived = new ConcurrentHashMap<String, BufferedImage>();
+
+  /**
+   * Create a manager loading files from a directory. Most code should use getShared() so that every window shares
+   * one cache.
+   * <P>
+   * @param dir directory the file names given to load() are relative to
+   */
+  public AssetManager(Path dir)
+  {
+    this.dir = dir;
+    final AtomicInteger n = new AtomicInteger();
+    loaders = Executors.newFixedThreadPool(LOADER_THREADS, r -> {
+      Thread t = new Thread(r, "asset-loader-" + n.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Return the manager for assets in the working directory, shared by every GameGUI.
+   */
+  public static AssetManager getShared()
+  {
+    return SHARED;
+  }
+
+  /**
+   * Start loading files that will be needed soon, all at once. Files already loading or loaded are skipped.
+   */
+  public void preload(String... names)
+  {
+    for (String name : names)
+      load(name);
+  }
+
+  /**
+   * Return the future image for a file, starting to load it if nobody has asked for it yet. A file that can't be
+   * read completes the future exceptionally and is reported on standard error once.
+   * <P>
+   * @param name file name, relative to the manager's directory
+   * @return a future completed on a loader thread with the image in the screen's compatible format
+   */
+  public CompletableFuture<BufferedImage> load(final String name)
+  {
+    CompletableFuture<BufferedImage> f = images.get(name);
+    if (f != null)
+      return f;
+    final CompletableFuture<BufferedImage> created = new CompletableFuture<BufferedImage>();
+    f = images.putIfAbsent(name, created);
+    if (f != null)
+      return f;
+    loaders.execute(() -> {
+      long start = System.nanoTime();
+      try {
+        BufferedImage src = ImageIO.read(dir.resolve(name).toFile());
+        if (src == null)
+          throw new IOException("unsupported image format");
+        BufferedImage img = convert(src, src.getWidth(), src.getHeight());
+        loadTimes.put(name, System.nanoTime() - start);
+        created.complete(img);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Could not open file " + name);
+        created.completeExceptionally(e);
+      }
+    });
+    return created;
+  }
+
+  /**
+   * Return true once a file has finished loading, successfully or not.
+   */
+  public boolean isDone(String name)
+  {
+    CompletableFuture<BufferedImage> f = images.get(name);
+    return f != null && f.isDone();
+  }
+
+  /**
+   * Return a file's image at its own size if it has loaded, or else a placeholder. Starts loading the file if
+   * needed. Never blocks.
+   * <P>
+   * @param name file name
+   * @param width width of the placeholder
+   * @param height height of the placeholder
+   * @param placeholder draws the stand-in
+   */
+  public BufferedImage get(String name, int width, int height, Placeholder placeholder)
+  {
+    BufferedImage img = loaded(name);
+    return img != null ? img : placeholder(name, width, height, placeholder);
+  }
+
+  /**
+   * Return a file's image scaled to a size, or a placeholder of that size if it hasn't loaded. The scaled image is
+   * cached, so only the first call for a size pays for the scaling. Never blocks.
+   * <P>
+   * @param name file name
+   * @param width width wanted
+   * @param height height wanted
+   * @param placeholder draws the stand-in
+   */
+  public BufferedImage getScaled(String name, int width, int height, Placeholder placeholder)
+  {
+    BufferedImage img = loaded(name);
+    if (img == null)
+      return placeholder(name, width, height, placeholder);
+    if (img.getWidth() == width && img.getHeight() == height)
+      return img;
+    String key = name + "@" + width + "x" + height;
+    BufferedImage scaled = derived.get(key);
+    if (scaled == null)
+    {
+      scaled = convert(img, width, height);
+      derived.putIfAbsent(key, scaled);
+    }
+    return scaled;
+  }
+
+  /**
+   * Return how long a file took to read and convert, in milliseconds, or -1 if it hasn't loaded.
+   */
+  public double getLoadMillis(String name)
+  {
+    Long nanos = loadTimes.get(name);
+    return nanos == null ? -1 : nanos / 1e6;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * The image of a file that has loaded, or null if it is still loading or failed
+   */
+  private BufferedImage loaded(String name)
+  {
+    CompletableFuture<BufferedImage> f = load(name);
+    return f.isDone() && !f.isCompletedExceptionally() ? f.join() : null;
+  }
+
+  private BufferedImage placeholder(String name, int width, int height, Placeholder placeholder)
+  {
+    String key = name + "@" + width + "x" + height + "?";
+    BufferedImage img = derived.get(key);
+    if (img == null)
+    {
+      img = createImage(width, height);
+      Graphics2D g = img.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      placeholder.paint(g, width, height);
+      g.dispose();
+      derived.putIfAbsent(key, img);
+    }
+    return img;
+  }
+
+  /*
+   * Copy an image into the screen's compatible format, scaling it to width x height
+   */
+  private static BufferedImage convert(BufferedImage src, int width, int height)
+  {
+    BufferedImage img = createImage(width, height);
+    Graphics2D g = img.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(src, 0, 0, width, height, null);
+    g.dispose();
+    return img;
+  }
+
+  /*
+   * A translucent image in the default screen's format, or premultiplied ARGB without a screen
+   */
+  private static BufferedImage createImage(int width, int height)
+  {
+    if (!GraphicsEnvironment.isHeadless())
+    {
+      GraphicsConfiguration gc =
+          GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+      return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+  }
+}
@@ -0,0 +1,456 @@
+/**
+ * Grid-indexed occupancy model for the walls, traps, and prizes on a game board.
+ * <P>
+ * Cells are numbered row by row, so cell = row * cols + col. Traps and prizes are stored as one bit per cell.
+ * Walls are stored as one bit per cell edge: a vertical wall blocks the edge on the right of its cell and a
+ * horizontal wall blocks the edge below its cell, which matches the segments placed by GameGUI.createWalls().
+ * Moves and jumps then become a few bit tests, and the remaining counts are kept as bits are set and cleared.
+ * <P>
+ * Each bit set is stored in lazily allocated chunks (see ChunkedBits), so a board of any size costs memory in
+ * proportion to its populated areas. The sets are copy-on-write: copy() and a GameState saved from the board share
+ * them without copying, and the board copies a set (and then only the chunks it writes) when it next changes it.
+ *
+ * @version 1.0
+ */
+public class Board
+{
+  private final int cols;
+  private final int rows;
+
+  // one bit per cell
+  private ChunkedBits traps;
+  private ChunkedBits prizes;
+  // one bit per blocking edge, indexed by the cell on the left of / above the edge
+  private ChunkedBits vWalls;
+  private ChunkedBits hWalls;
+
+  // layout as generated, used to reactivate traps and prizes on replay
+  private ChunkedBits initialTraps;
+  private ChunkedBits initialPrizes;
+
+  // true while the item sets (traps, prizes) or the layout sets (walls, initial items) are also held by a copy or
+  // a saved GameState; they are copied before the next change
+  private boolean itemsShared;
+  private boolean layoutShared;
+
+  // cached fingerprint(), valid until the layout changes
+  private long fingerprint;
+  private boolean fingerprintValid;
+
+  /**
+   * Create an empty board.
+   * <P>
+   * precondition: cols and rows must be positive, non-zero integers
+   * <P>
+   * @param cols number of cells across
+   * @param rows number of cells down
+   */
+  public Board(int cols, int rows)
+  {
+    this.cols = cols;
+    this.rows = rows;
+    int cells = cols * rows;
+    traps = new ChunkedBits(cells);
+    prizes = new ChunkedBits(cells);
+    vWalls = new ChunkedBits(cells);
+    hWalls = new ChunkedBits(cells);
+    initialTraps = new ChunkedBits(cells);
+    initialPrizes = new ChunkedBits(cells);
+  }
+
+  /*
+   * Copy constructor, see copy().
+   */
+  private Board(Board other)
+  {
+    cols = other.cols;
+    rows = other.rows;
+    traps = other.traps;
+    prizes = other.prizes;
+    vWalls = other.vWalls;
+    hWalls = other.hWalls;
+    initialTraps = other.initialTraps;
+    initialPrizes = other.initialPrizes;
+    itemsShared = true;
+    layoutShared = true;
+    fingerprint = other.fingerprint;
+    fingerprintValid = other.fingerprintValid;
+  }
+
+  /**
+   * Return an independent copy of this board, e.g. for handing to another thread. This is O(1): the boards share
+   * their storage until one of them changes.
+   */
+  public Board copy()
+  {
+    itemsShared = true;
+    layoutShared = true;
+    return new Board(this);
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  public int getCellCount()
+  {
+    return cols * rows;
+  }
+
+  /**
+   * Return the cell index for a column and row, or -1 if the location is off the board.
+   */
+  public int cell(int col, int row)
+  {
+    if (col < 0 || col >= cols || row < 0 || row >= rows)
+      return -1;
+    return row * cols + col;
+  }
+
+  public int colOf(int cell)
+  {
+    return cell % cols;
+  }
+
+  public int rowOf(int cell)
+  {
+    return cell / cols;
+  }
+
+  /**
+   * Remove every wall, trap, and prize from the board.
+   */
+  public void clear()
+  {
+    unshareItems();
+    unshareLayout();
+    traps.clearAll();
+    prizes.clearAll();
+    vWalls.clearAll();
+    hWalls.clearAll();
+    initialTraps.clearAll();
+    initialPrizes.clearAll();
+    fingerprintValid = false;
+  }
+
+  /**
+   * Place a trap. Placing a trap on a cell that already has one has no effect.
+   */
+  public void addTrap(int cell)
+  {
+    unshareItems();
+    unshareLayout();
+    traps.set(cell);
+    initialTraps.set(cell);
+    fingerprintValid = false;
+  }
+
+  /**
+   * Place a prize. Prizes and traps may occupy the same cell, with the trap hiding the prize.
+   */
+  public void addPrize(int cell)
+  {
+    unshareItems();
+    unshareLayout();
+    prizes.set(cell);
+    initialPrizes.set(cell);
+    fingerprintValid = false;
+  }
+
+  /**
+   * Place a vertical wall segment on the right edge of the cell.
+   */
+  public void addVerticalWall(int cell)
+  {
+    unshareLayout();
+    vWalls.set(cell);
+    fingerprintValid = false;
+  }
+
+  /**
+   * Place a horizontal wall segment on the bottom edge of the cell.
+   */
+  public void addHorizontalWall(int cell)
+  {
+    unshareLayout();
+    hWalls.set(cell);
+    fingerprintValid = false;
+  }
+
+  /**
+   * Remove the vertical wall segment on the right edge of the cell, if there is one.
+   */
+  public void removeVerticalWall(int cell)
+  {
+    unshareLayout();
+    vWalls.clear(cell);
+    fingerprintValid = false;
+  }
+
+  /**
+   * Remove the horizontal wall segment on the bottom edge of the cell, if there is one.
+   */
+  public void removeHorizontalWall(int cell)
+  {
+    unshareLayout();
+    hWalls.clear(cell);
+    fingerprintValid = false;
+  }
+
+  public boolean hasTrap(int cell)
+  {
+    return traps.get(cell);
+  }
+
+  public boolean hasPrize(int cell)
+  {
+    return prizes.get(cell);
+  }
+
+  public boolean hasVerticalWall(int cell)
+  {
+    return vWalls.get(cell);
+  }
+
+  public boolean hasHorizontalWall(int cell)
+  {
+    return hWalls.get(cell);
+  }
+
+  /**
+   * Spring (remove) the trap on a cell.
+   * <P>
+   * @return true if an active trap was on the cell, false otherwise
+   */
+  public boolean clearTrap(int cell)
+  {
+    if (!traps.get(cell))
+      return false;
+    unshareItems();
+    return traps.clear(cell);
+  }
+
+  /**
+   * Pick up (remove) the prize on a cell.
+   * <P>
+   * @return true if a prize was on the cell, false otherwise
+   */
+  public boolean clearPrize(int cell)
+  {
+    if (!prizes.get(cell))
+      return false;
+    unshareItems();
+    return prizes.clear(cell);
+  }
+
+  /**
+   * Reactivate every trap and prize that was placed on the board.
+   */
+  public void resetItems()
+  {
+    // the item sets start out sharing the initial chunks, and copy each chunk the first time it changes
+    traps = initialTraps.copy();
+    prizes = initialPrizes.copy();
+    itemsShared = false;
+  }
+
+  /**
+   * Return the trap set, for a GameState to keep without copying. The board copies it before changing it.
+   */
+  ChunkedBits shareTraps()
+  {
+    itemsShared = true;
+    return traps;
+  }
+
+  /**
+   * Return the prize set, for a GameState to keep without copying. The board copies it before changing it.
+   */
+  ChunkedBits sharePrizes()
+  {
+    itemsShared = true;
+    return prizes;
+  }
+
+  /**
+   * Put back the traps and prizes saved in a GameState. The sets stay shared with the state.
+   * <P>
+   * precondition: the sets came from shareTraps() and sharePrizes() of a board with the same layout
+   */
+  void restoreItems(ChunkedBits savedTraps, ChunkedBits savedPrizes)
+  {
+    traps = savedTraps;
+    prizes = savedPrizes;
+    itemsShared = true;
+  }
+
+  /**
+   * Check if a wall lies between a cell and the cell reached by moving dCol, dRow cells in a straight line.
+   * Every edge crossed on the way is checked, so a jump is blocked by a wall next to the player or by a wall
+   * next to the landing cell.
+   * <P>
+   * precondition: one of dCol and dRow is zero and the destination is on the board
+   * <P>
+   * @param cell starting cell
+   * @param dCol number of cells to move right (positive) or left (negative)
+   * @param dRow number of cells to move down (positive) or up (negative)
+   * @return true if a wall is in the way, false otherwise
+   */
+  public boolean isBlocked(int cell, int dCol, int dRow)
+  {
+    // walk the crossed edges; each edge is named by the cell on its left (or above it)
+    for (int i = 0; i < dCol; i++)
+      if (vWalls.get(cell + i)) return true;
+    for (int i = -1; i >= dCol; i--)
+      if (vWalls.get(cell + i)) return true;
+    for (int i = 0; i < dRow; i++)
+      if (hWalls.get(cell + i * cols)) return true;
+    for (int i = -1; i >= dRow; i--)
+      if (hWalls.get(cell + i * cols)) return true;
+    return false;
+  }
+
+  /**
+   * Return true if a trap was placed on the cell when the board was generated, even if it has since been sprung.
+   */
+  public boolean hasInitialTrap(int cell)
+  {
+    return initialTraps.get(cell);
+  }
+
+  /**
+   * Return true if a prize was placed on the cell when the board was generated, even if it has since been picked up.
+   */
+  public boolean hasInitialPrize(int cell)
+  {
+    return initialPrizes.get(cell);
+  }
+
+  /**
+   * Return the first cell at or after fromCell where a trap was placed, or -1 if there is none.
+   */
+  public int nextInitialTrap(int fromCell)
+  {
+    return initialTraps.nextSetBit(fromCell);
+  }
+
+  /**
+   * Return the first cell at or after fromCell where a prize was placed, or -1 if there is none.
+   */
+  public int nextInitialPrize(int fromCell)
+  {
+    return initialPrizes.nextSetBit(fromCell);
+  }
+
+  /**
+   * Return a 64-bit fingerprint of the board as generated: its size, walls, and initial traps and prizes.
+   * Boards with the same layout have the same fingerprint; different layouts collide with negligible probability.
+   */
+  public long fingerprint()
+  {
+    if (!fingerprintValid)
+    {
+      long h = mix(((long)cols << 32) | rows);
+      h = mix(h ^ vWalls.hash());
+      h = mix(h ^ hWalls.hash() * 3);
+      h = mix(h ^ initialTraps.hash() * 5);
+      h = mix(h ^ initialPrizes.hash() * 7);
+      fingerprint = h;
+      fingerprintValid = true;
+    }
+    return fingerprint;
+  }
+
+  public int getRemainingTraps()
+  {
+    return traps.count();
+  }
+
+  public int getRemainingPrizes()
+  {
+    return prizes.count();
+  }
+
+  public int getRemainingWalls()
+  {
+    return vWalls.count() + hWalls.count();
+  }
+
+  /**
+   * Return the first cell at or after fromCell with an active trap, or -1 if there is none.
+   */
+  public int nextTrap(int fromCell)
+  {
+    return traps.nextSetBit(fromCell);
+  }
+
+  /**
+   * Return the first cell at or after fromCell with a prize, or -1 if there is none.
+   */
+  public int nextPrize(int fromCell)
+  {
+    return prizes.nextSetBit(fromCell);
+  }
+
+  /**
+   * Return the first cell at or after fromCell with a wall on its right edge, or -1 if there is none.
+   */
+  public int nextVerticalWall(int fromCell)
+  {
+    return vWalls.nextSetBit(fromCell);
+  }
+
+  /**
+   * Return the first cell at or after fromCell with a wall on its bottom edge, or -1 if there is none.
+   */
+  public int nextHorizontalWall(int fromCell)
+  {
+    return hWalls.nextSetBit(fromCell);
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Take private copies of the trap and prize sets if a copy or saved state holds them
+   */
+  private void unshareItems()
+  {
+    if (itemsShared)
+    {
+      traps = traps.copy();
+      prizes = prizes.copy();
+      itemsShared = false;
+    }
+  }
+
+  /*
+   * Take private copies of the wall and initial item sets if a copy holds them
+   */
+  private void unshareLayout()
+  {
+    if (layoutShared)
+    {
+      vWalls = vWalls.copy();
+      hWalls = hWalls.copy();
+      initialTraps = initialTraps.copy();
+      initialPrizes = initialPrizes.copy();
+      layoutShared = false;
+    }
+  }
+
+  /*
+   * 64-bit finalizer from SplitMix64, also used by GameEngine's state hash
+   */
+  static long mix(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
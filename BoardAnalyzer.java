@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * Monte Carlo statistics over many random boards.
+ * <P>
+ * For each wall/trap/prize configuration the analyzer generates boards from consecutive seeds and evaluates them on
+ * every core with a parallel stream. It reports the fraction of boards that can be solved, the distribution of
+ * shortest route lengths, and how often a trap hides a prize. Each worker thread keeps its own engine and search
+ * buffers, and every board is generated from its own seed, so workers share no state and runs are reproducible.
+ * <P>
+ * Usage: java BoardAnalyzer [--boards n] [--size 8x5] [--seed s] [--configs 20/5/3,40/5/3] [--solvable]
+ *
+ * @version 1.0
+ */
+public class BoardAnalyzer
+{
+  private static final String USAGE = "Usage: java BoardAnalyzer [--boards n] [--size 8x5] [--seed s]"
+                                      + " [--configs 20/5/3,40/5/3] [--solvable]";
+
+  /**
+   * Statistics for one configuration. Partial results from each worker are merged with combine().
+   */
+  public static class Stats
+  {
+    private long boards;
+    private long solvable;
+    // histogram of shortest route lengths, indexed by number of steps
+    private long[] steps;
+    // boards with at least one prize under a trap, and the total number of hidden prizes
+    private long boardsWithHiddenPrize;
+    private long hiddenPrizes;
+
+    Stats(int cells)
+    {
+      steps = new long[cells + 1];
+    }
+
+    void add(int fewestSteps, int hidden)
+    {
+      boards++;
+      if (fewestSteps >= 0)
+      {
+        solvable++;
+        steps[fewestSteps]++;
+      }
+      if (hidden > 0)
+        boardsWithHiddenPrize++;
+      hiddenPrizes += hidden;
+    }
+
+    void combine(Stats other)
+    {
+      boards += other.boards;
+      solvable += other.solvable;
+      for (int i = 0; i < steps.length; i++)
+        steps[i] += other.steps[i];
+      boardsWithHiddenPrize += other.boardsWithHiddenPrize;
+      hiddenPrizes += other.hiddenPrizes;
+    }
+
+    public long getBoards()
+    {
+      return boards;
+    }
+
+    /**
+     * Return the fraction of boards on which the far right column can be reached.
+     */
+    public double getSolvableFraction()
+    {
+      return boards == 0 ? 0 : (double)solvable / boards;
+    }
+
+    /**
+     * Return the number of solvable boards whose shortest route takes the given number of steps.
+     */
+    public long getStepsCount(int n)
+    {
+      return n < steps.length ? steps[n] : 0;
+    }
+
+    /**
+     * Return the fraction of boards with at least one prize hidden under a trap.
+     */
+    public double getHiddenPrizeFraction()
+    {
+      return boards == 0 ? 0 : (double)boardsWithHiddenPrize / boards;
+    }
+
+    public long getHiddenPrizes()
+    {
+      return hiddenPrizes;
+    }
+  }
+
+  /*
+   * Per-thread engine and search buffers.
+   */
+  private static class Worker
+  {
+    final GameEngine engine;
+    final int[] dist;
+    final int[] queue;
+
+    Worker(int cols, int rows, int[] config, boolean solvable)
+    {
+      engine = new GameEngine(cols, rows);
+      engine.setSolvable(solvable);
+      engine.setWalls(config[0]);
+      engine.setTraps(config[1]);
+      engine.setPrizes(config[2]);
+      dist = new int[cols * rows];
+      queue = new int[cols * rows];
+    }
+  }
+
+  /**
+   * Generate and evaluate boards for one configuration across all cores.
+   * <P>
+   * @param cols number of cells across
+   * @param rows number of cells down
+   * @param config {walls, traps, prizes}
+   * @param boards number of boards to generate
+   * @param seed base seed; board i is generated from a seed derived from seed and i
+   * @param solvable true to generate only solvable boards
+   * @return the merged statistics
+   */
+  public static Stats analyze(final int cols, final int rows, final int[] config, long boards, final long seed,
+                              final boolean solvable)
+  {
+    final ThreadLocal<Worker> workers = ThreadLocal.withInitial(() -> new Worker(cols, rows, config, solvable));
+
+    return LongStream.range(0, boards).parallel().collect(
+      () -> new Stats(cols * rows),
+      (stats, i) -> {
+        Worker w = workers.get();
+        w.engine.createBoard(boardSeed(seed, i));
+        Board board = w.engine.getBoard();
+        stats.add(RouteSolver.fewestSteps(board, w.dist, w.queue), hiddenPrizes(board));
+      },
+      Stats::combine);
+  }
+
+  /**
+   * Return the seed of board i in a run, so any board in a report can be recreated with createBoard(long).
+   */
+  public static long boardSeed(long seed, long i)
+  {
+    return seed + i * 0x9E3779B97F4A7C15L;
+  }
+
+  public static void main(String[] args)
+  {
+    long boards = 1000000;
+    int cols = GameEngine.GRID_W;
+    int rows = GameEngine.GRID_H;
+    long seed = 141;
+    String configs = "20/5/3";
+    boolean solvable = false;
+    List<int[]> parsed = new ArrayList<int[]>();
+    String option = null;
+    try {
+      for (int i = 0; i < args.length; i++)
+      {
+        option = args[i];
+        switch (option)
+        {
+          case "--boards":
+            boards = Long.parseLong(value(args, ++i));
+            if (boards < 1)
+              throw new IllegalArgumentException("--boards expects a positive number");
+            break;
+          case "--seed": seed = Long.parseLong(value(args, ++i)); break;
+          case "--configs": configs = value(args, ++i); break;
+          case "--solvable": solvable = true; break;
+          case "--size":
+            String[] wh = value(args, ++i).toLowerCase().split("x");
+            if (wh.length != 2)
+              throw new IllegalArgumentException("--size expects WxH, e.g. 8x5");
+            cols = Integer.parseInt(wh[0]);
+            rows = Integer.parseInt(wh[1]);
+            if (cols < 1 || rows < 1)
+              throw new IllegalArgumentException("--size expects a positive width and height");
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+      }
+      option = "--configs";
+      for (String c : configs.split(","))
+      {
+        String[] wtp = c.split("/");
+        if (wtp.length != 3)
+          throw new IllegalArgumentException("--configs expects walls/traps/prizes, e.g. 20/5/3,40/5/3");
+        int[] config = { Integer.parseInt(wtp[0]), Integer.parseInt(wtp[1]), Integer.parseInt(wtp[2]) };
+        if (config[0] < 0 || config[1] < 0 || config[2] < 0)
+          throw new IllegalArgumentException("--configs expects counts of 0 or more");
+        parsed.add(config);
+      }
+    } catch (NumberFormatException e) {
+      System.err.println(option + " expects a number");
+      System.err.println(USAGE);
+      return;
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      return;
+    }
+
+    for (int[] config : parsed)
+    {
+      long start = System.nanoTime();
+      Stats stats = analyze(cols, rows, config, boards, seed, solvable);
+      double secs = (System.nanoTime() - start) / 1e9;
+
+      System.out.printf("walls=%d traps=%d prizes=%d size=%dx%d boards=%d%n",
+                        config[0], config[1], config[2], cols, rows, stats.getBoards());
+      System.out.printf("  throughput: %.0f boards/sec on %d cores%n",
+                        stats.getBoards() / secs, Runtime.getRuntime().availableProcessors());
+      System.out.printf("  solvable: %.2f%%%n", 100 * stats.getSolvableFraction());
+      System.out.printf("  trap hides a prize: %.2f%% of boards, %d prizes in total%n",
+                        100 * stats.getHiddenPrizeFraction(), stats.getHiddenPrizes());
+      System.out.println("  shortest route (steps: boards):");
+      for (int n = 0; n <= cols * rows; n++)
+      {
+        long count = stats.getStepsCount(n);
+        if (count > 0)
+          System.out.printf("    %3d: %d%n", n, count);
+      }
+    }
+  }
+
+  /*
+   * The value following an option, or an IllegalArgumentException naming the option if there is none
+   */
+  private static String value(String[] args, int i)
+  {
+    if (i >= args.length)
+      throw new IllegalArgumentException(args[i - 1] + " needs a value");
+    return args[i];
+  }
+
+  /*
+   * Count the prizes that were placed under a trap.
+   */
+  private static int hiddenPrizes(Board board)
+  {
+    int hidden = 0;
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      if (board.hasInitialTrap(c))
+        hidden++;
+    return hidden;
+  }
+}
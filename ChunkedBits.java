@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * A fixed-size bit set stored in chunks of up to 64 words (4096 bits) that are allocated on first write.
+ * <P>
+ * A chunk that has never had a bit set is the shared EMPTY chunk, so memory is proportional to the populated parts of the board
+ * rather than its size, and scans skip empty chunks in one step. copy() shares the chunks between the two sets:
+ * each chunk is copied the first time either set writes to it, so copying costs one pointer per chunk and boards
+ * that mostly stay the same share nearly all their storage. The number of set bits is kept up to date, so count()
+ * is O(1).
+ *
+ * @version 1.0
+ */
+class ChunkedBits
+{
+  private static final int WORD_SHIFT = 6;
+  private static final int CHUNK_SHIFT = 6;
+  private static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+  // stands in for every unpopulated chunk, so reads need no null check; never written
+  private static final long[] EMPTY = new long[CHUNK_WORDS];
+
+  private final int words;
+  private final long[][] chunks;
+  // chunks this set may write in place; any other non-null chunk may be shared and is copied before writing
+  private final boolean[] owned;
+  private int count;
+
+  /**
+   * Create an empty set of the given number of bits.
+   */
+  ChunkedBits(int bits)
+  {
+    words = (bits + 63) >>> WORD_SHIFT;
+    int n = (words + CHUNK_WORDS - 1) >>> CHUNK_SHIFT;
+    chunks = new long[n][];
+    Arrays.fill(chunks, EMPTY);
+    owned = new boolean[n];
+  }
+
+  /*
+   * Copy constructor, see copy().
+   */
+  private ChunkedBits(ChunkedBits other)
+  {
+    words = other.words;
+    chunks = other.chunks.clone();
+    owned = new boolean[chunks.length];
+    count = other.count;
+  }
+
+  /**
+   * Return a set with the same bits that shares this set's chunks. Both sets copy a shared chunk before their
+   * next write to it.
+   */
+  ChunkedBits copy()
+  {
+    Arrays.fill(owned, false);
+    return new ChunkedBits(this);
+  }
+
+  boolean get(int i)
+  {
+    return (chunks[i >>> (WORD_SHIFT + CHUNK_SHIFT)][(i >>> WORD_SHIFT) & (CHUNK_WORDS - 1)] & (1L << i)) != 0;
+  }
+
+  void set(int i)
+  {
+    int c = i >>> (WORD_SHIFT + CHUNK_SHIFT);
+    long[] chunk = owned[c] ? chunks[c] : writableChunk(c);
+    int w = (i >>> WORD_SHIFT) & (CHUNK_WORDS - 1);
+    long old = chunk[w];
+    long updated = old | (1L << i);
+    chunk[w] = updated;
+    // adds 1 only if the bit was clear; branch-free because repeated placements are common
+    count += (int)((updated ^ old) >>> i);
+  }
+
+  /**
+   * Clear a bit.
+   * <P>
+   * @return true if the bit was set
+   */
+  boolean clear(int i)
+  {
+    if (!get(i))
+      return false;
+    int c = i >>> (WORD_SHIFT + CHUNK_SHIFT);
+    long[] chunk = owned[c] ? chunks[c] : writableChunk(c);
+    chunk[(i >>> WORD_SHIFT) & (CHUNK_WORDS - 1)] &= ~(1L << i);
+    count--;
+    return true;
+  }
+
+  /**
+   * Clear every bit. Chunks this set owns are zeroed and kept for reuse; shared chunks are dropped.
+   */
+  void clearAll()
+  {
+    for (int c = 0; c < chunks.length; c++)
+    {
+      if (owned[c])
+        Arrays.fill(chunks[c], 0L);
+      else
+        chunks[c] = EMPTY;
+    }
+    count = 0;
+  }
+
+  int count()
+  {
+    return count;
+  }
+
+  /**
+   * Return the first set bit at or after from, or -1 if there is none.
+   */
+  int nextSetBit(int from)
+  {
+    if (from < 0)
+      return -1;
+    int w = from >>> WORD_SHIFT;
+    if (w >= words)
+      return -1;
+    long mask = -1L << from;
+    for (int c = w >>> CHUNK_SHIFT; c < chunks.length; c++)
+    {
+      long[] chunk = chunks[c];
+      if (chunk != EMPTY)
+      {
+        for (int i = w & (CHUNK_WORDS - 1); i < chunk.length; i++)
+        {
+          long word = chunk[i] & mask;
+          if (word != 0)
+            return (((c << CHUNK_SHIFT) + i) << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+          mask = -1L;
+        }
+      }
+      mask = -1L;
+      w = 0;
+    }
+    return -1;
+  }
+
+  /**
+   * Return a hash of the set bits. Empty chunks and words don't contribute, so the cost is proportional to the
+   * populated chunks.
+   */
+  long hash()
+  {
+    long h = 0;
+    for (int c = 0; c < chunks.length; c++)
+    {
+      long[] chunk = chunks[c];
+      if (chunk == EMPTY)
+        continue;
+      for (int i = 0; i < chunk.length; i++)
+        if (chunk[i] != 0)
+          h += Board.mix(((long)((c << CHUNK_SHIFT) + i) * 0x9E3779B97F4A7C15L) ^ chunk[i]);
+    }
+    return h;
+  }
+
+  /**
+   * Return true if both sets have exactly the same bits set.
+   */
+  boolean sameBits(ChunkedBits other)
+  {
+    if (other.words != words || other.count != count)
+      return false;
+    for (int c = 0; c < chunks.length; c++)
+    {
+      long[] a = chunks[c];
+      long[] b = other.chunks[c];
+      if (a == b)
+        continue;
+      int n = Math.min(a.length, b.length);
+      for (int i = 0; i < n; i++)
+        if (a[i] != b[i])
+          return false;
+    }
+    return true;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Return chunk c ready to be written, allocating it if empty or copying it if it may be shared. The last chunk
+   * only has as many words as the set needs, so small boards stay a single short array.
+   */
+  private long[] writableChunk(int c)
+  {
+    long[] chunk = chunks[c];
+    if (!owned[c])
+    {
+      if (chunk == EMPTY)
+        chunk = new long[Math.min(CHUNK_WORDS, words - (c << CHUNK_SHIFT))];
+      else
+        chunk = chunk.clone();
+      chunks[c] = chunk;
+      owned[c] = true;
+    }
+    return chunk;
+  }
+}
@@ -0,0 +1,149 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A game action that can be queued and applied to a GameEngine, from the console or the keyboard.
+ * Applying a command updates the engine's score with whatever the action earned or cost.
+ * <P>
+ * Each command lists the console words that name it. They are loaded into one hash table when the class is
+ * initialized, so parsing a typed command is a single lookup rather than a scan of every alias.
+ *
+ * @version 1.0
+ */
+public enum Command
+{
+  RIGHT(1, 0, "right", "r"),
+  LEFT(-1, 0, "left", "l"),
+  UP(0, -1, "up", "u"),
+  DOWN(0, 1, "down", "d"),
+  JUMP_RIGHT(2, 0, "jump", "jr"),
+  JUMP_LEFT(-2, 0, "jumpleft", "jl"),
+  JUMP_UP(0, -2, "jumpup", "ju"),
+  JUMP_DOWN(0, 2, "jumpdown", "jd"),
+  PICKUP(0, 0, "pickup", "p"),
+  REPLAY(0, 0, "replay"),
+  UNDO(0, 0, "undo"),
+  REDO(0, 0, "redo"),
+  HELP(0, 0, "help", "?"),
+  QUIT(0, 0, "quit", "q");
+
+  // console word -> command, for every alias of every command
+  private static final Map<String, Command> BY_ALIAS = new HashMap<String, Command>();
+  static
+  {
+    for (Command c : values())
+      for (String alias : c.aliases)
+        BY_ALIAS.put(alias, c);
+  }
+
+  // cells moved, for the movement commands
+  private final int cellsX;
+  private final int cellsY;
+  private final String[] aliases;
+
+  Command(int cellsX, int cellsY, String... aliases)
+  {
+    this.cellsX = cellsX;
+    this.cellsY = cellsY;
+    this.aliases = aliases;
+  }
+
+  /**
+   * Return the command a console word names, ignoring case.
+   * <P>
+   * @param word the word typed
+   * @return the command, or null if the word is not a command
+   */
+  public static Command forAlias(String word)
+  {
+    Command c = BY_ALIAS.get(word);
+    if (c == null)
+    {
+      // toLowerCase returns the same string when there is nothing to change, so only mixed case pays for a copy
+      c = BY_ALIAS.get(word.toLowerCase(Locale.ROOT));
+    }
+    return c;
+  }
+
+  /**
+   * Return the console words that name this command, the full word first.
+   */
+  public String[] getAliases()
+  {
+    return aliases.clone();
+  }
+
+  /**
+   * Return the number of cells this command moves the player right (negative for left).
+   */
+  public int getCellsX()
+  {
+    return cellsX;
+  }
+
+  /**
+   * Return the number of cells this command moves the player down (negative for up).
+   */
+  public int getCellsY()
+  {
+    return cellsY;
+  }
+
+  /**
+   * Return true if this command moves or jumps the player.
+   */
+  public boolean isMove()
+  {
+    return cellsX != 0 || cellsY != 0;
+  }
+
+  /**
+   * Apply the command to the engine and add the result to its score. Moves, pickups, and replays can be undone;
+   * UNDO and REDO step through them. HELP and QUIT do not change the game.
+   * <P>
+   * @param engine the game to update
+   * @return the score change
+   */
+  public int apply(GameEngine engine)
+  {
+    if (this == UNDO || this == REDO)
+    {
+      int before = engine.getScore();
+      if (this == UNDO)
+        engine.undo();
+      else
+        engine.redo();
+      return engine.getScore() - before;
+    }
+    if (this == HELP || this == QUIT)
+      return 0;
+
+    engine.checkpoint();
+    return applyRules(engine);
+  }
+
+  /**
+   * Apply a move, pickup, or replay and add the result to the score, without saving an undo state. The outcome
+   * depends only on the engine's state, which is what lets GameHistory rebuild a state from a snapshot.
+   * <P>
+   * precondition: the command is not UNDO or REDO
+   * <P>
+   * @param engine the game to update
+   * @return the score change
+   */
+  int applyRules(GameEngine engine)
+  {
+    int delta;
+    if (isMove())
+      delta = engine.movePlayerByCells(cellsX, cellsY);
+    else if (this == PICKUP)
+      delta = engine.pickupPrize();
+    else if (this == REPLAY)
+      delta = engine.replay();
+    else
+      return 0;
+    engine.addToScore(delta);
+    return delta;
+  }
+}
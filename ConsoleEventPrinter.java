@@ -0,0 +1,89 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prints game events as the classic console messages ("TRAP IS SPRUNG!", "A WALL IS IN THE WAY", ...).
+ * <P>
+ * The game thread only queues each event; a daemon thread formats whatever has queued up and writes it with a
+ * single print, so console I/O never slows down the rules. Call flush() before printing anything that must
+ * appear after the messages, such as the score line.
+ *
+ * @version 1.0
+ */
+public class ConsoleEventPrinter implements GameEvent.Listener
+{
+  private final ConcurrentLinkedQueue<GameEvent> queue = new ConcurrentLinkedQueue<GameEvent>();
+  private final Thread thread;
+  private volatile boolean running;
+
+  public ConsoleEventPrinter()
+  {
+    thread = new Thread(this::run, "console-events");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Start the printing thread.
+   */
+  public void start()
+  {
+    running = true;
+    thread.start();
+  }
+
+  /**
+   * Print any events still queued, then stop the printing thread.
+   */
+  public void stop()
+  {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  @Override
+  public void gameEvent(GameEvent event)
+  {
+    if (event.getType().getMessage() == null)
+      return;
+    queue.offer(event);
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Print every event queued so far before returning.
+   */
+  public void flush()
+  {
+    // the printing thread holds the same lock while it writes, so nothing it took from the queue is still pending
+    synchronized (this)
+    {
+      StringBuilder out = new StringBuilder();
+      for (GameEvent e = queue.poll(); e != null; e = queue.poll())
+        out.append(e.getType().getMessage()).append(System.lineSeparator());
+      if (out.length() > 0)
+      {
+        System.out.print(out);
+        System.out.flush();
+      }
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private void run()
+  {
+    while (running)
+    {
+      if (queue.isEmpty())
+        LockSupport.park(this);
+      else
+        flush();
+    }
+  }
+}
@@ -5,7 +5,14 @@
 * 10/10/2019
 * Copyright(c) 2019 PLTW to present. All rights reserved
 */
-import java.util.Scanner;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
 
 /**
  * Create an escape room game where the player must navigate
@@ -38,34 +45,170 @@ public class EscapeRoom
       }
       */
 
+  // largest board, in cells, whose par is worked out before play starts (a few hundred ms and about 10 MB at this size)
+  private static final int PAR_MAX_CELLS = 1 << 20;
+
+  private static final String USAGE = "Usage: java EscapeRoom [--seed n] [--solvable] [--size WxH] [--script file]"
+                                      + " [--journal file] [--metrics n] [--fps n]";
+
   public static void main(String[] args) 
   {      
+    // the window's images load in the background while the console and board are set up
+    GameGUI.preloadAssets();
+
     // welcome message
     System.out.println("Welcome to EscapeRoom!");
     System.out.println("Get to the other side of the room, avoiding walls and invisible traps,");
     System.out.println("pick up all the prizes.\n");
-  System.out.println("Controls: You can also use the keyboard when the game window is focused:\n  Arrow keys to move, Shift+Arrow to jump, 'p' to pickup, 'r' to replay, 'q' to quit.\n");
+  System.out.println("Controls: You can also use the keyboard when the game window is focused:\n  Arrow keys to move, Shift+Arrow to jump, 'p' to pickup, 'r' to replay,\n  'z' to undo, 'y' to redo, 'q' to quit.\n");
     
-    GameGUI game = new GameGUI();
-    game.createBoard();
+    // "--seed n" recreates a previous board, e.g. from a bug report; "--solvable" only deals boards that can be won;
+    // "--script file" plays the commands in a file as one batch before the prompt; "--size WxH" plays on a board
+    // W cells across and H cells down, with walls, traps, and prizes in the same density as the default board;
+    // "--journal file" records every command for GameJournal to replay; "--metrics n" prints the latency and event
+    // metrics every n seconds (they are always available over JMX); "--fps n" draws the window from a render loop at
+    // up to n frames per second, with the player gliding between cells, instead of repainting on each change
+    Long seed = null;
+    String script = null;
+    String journalFile = null;
+    long metricsPeriod = 0;
+    int fps = 0;
+    boolean solvable = false;
+    int cols = 0;
+    int rows = 0;
+    String option = null;
+    try {
+      for (int i = 0; i < args.length; i++)
+      {
+        option = args[i];
+        switch (option)
+        {
+          case "--seed": seed = Long.parseLong(value(args, ++i)); break;
+          case "--solvable": solvable = true; break;
+          case "--script": script = value(args, ++i); break;
+          case "--journal": journalFile = value(args, ++i); break;
+          case "--metrics": metricsPeriod = Long.parseLong(value(args, ++i)); break;
+          case "--fps":
+            fps = Integer.parseInt(value(args, ++i));
+            if (fps < 1)
+              throw new IllegalArgumentException("--fps expects a positive frame rate");
+            break;
+          case "--size":
+            String[] size = value(args, ++i).toLowerCase().split("x");
+            if (size.length != 2)
+              throw new IllegalArgumentException("--size expects WxH, e.g. 40x25");
+            cols = Integer.parseInt(size[0]);
+            rows = Integer.parseInt(size[1]);
+            if (cols < 1 || rows < 1)
+              throw new IllegalArgumentException("--size expects a positive width and height");
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+      }
+    } catch (NumberFormatException e) {
+      System.err.println(option + " expects a number");
+      System.err.println(USAGE);
+      return;
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      return;
+    }
+
+    GameGUI game = cols > 0 ? new GameGUI(cols, rows) : new GameGUI();
+    game.setSolvable(solvable);
+    if (cols > 0)
+    {
+      // same number of items per cell as the default 8x5 board
+      int cells = cols * rows;
+      game.setWalls(Math.max(1, 20 * cells / 40));
+      game.setTraps(Math.max(1, 5 * cells / 40));
+      game.setPrizes(Math.max(1, 3 * cells / 40));
+    }
+    // game messages are printed from the engine's events, off the game thread
+    ConsoleEventPrinter printer = new ConsoleEventPrinter();
+    game.getEngine().addListener(printer);
+    printer.start();
+    if (seed != null)
+      game.createBoard(seed);
+    else
+      game.createBoard();
+    System.out.println("Board seed: " + game.getSeed());
+    // par for this board, so players know what they are aiming for; the search holds a few arrays the size of the
+    // board, so very large boards start without it rather than wait seconds for it
+    RouteSolver.Solution par = game.getEngine().getBoard().getCellCount() <= PAR_MAX_CELLS
+                               ? new RouteSolver().solve(game.getEngine()) : null;
+    if (par == null)
+    {
+      System.out.println("Par: not worked out for boards over " + PAR_MAX_CELLS + " cells");
+    }
+    else if (par.isSolvable())
+    {
+      // boards too large for the full search only get the fewest-steps route, whose score is a lower bound
+      RouteSolver.Route best = par.getBestScore();
+      System.out.println("Par: " + par.getFewestSteps().getSteps() + " steps; best possible score "
+                         + (best != null ? best.getScore() : "at least " + par.getFewestSteps().getScore()));
+    }
+    else
+    {
+      System.out.println("Par: the far right wall can't be reached on this board");
+    }
   // automatically start/restart the board on first run so the game is initialized
   game.replay();
 
-    // size of move
-    int m = 60; 
-    // individual player moves
-    int px = 0;
-    int py = 0; 
-    
-    int score = 0;
+    // all game changes go through one game-logic thread; the window and console show its snapshots
+    GameActor actor = new GameActor(game.getEngine());
+    actor.addListener(game::show);
+    game.setActor(actor);
+
+    // instrument the hot paths; the numbers are readable from JConsole or VisualVM while the game runs
+    GameMetrics metrics = new GameMetrics();
+    game.getEngine().setMetrics(metrics);
+    actor.setMetrics(metrics);
+    game.setMetrics(metrics);
+    UserInput.setMetrics(metrics);
+    try {
+      metrics.register();
+    } catch (JMException e) {
+      System.err.println("Could not register metrics with JMX: " + e.getMessage());
+    }
+    // on stderr, so the dump doesn't run into the prompt
+    if (metricsPeriod > 0)
+      metrics.startDump(System.err, metricsPeriod * 1000);
+    if (fps > 0)
+    {
+      ActiveRenderer renderer = game.startActiveRendering(fps);
+      System.out.println("Drawing up to " + fps + " frames/sec"
+                         + (renderer.isPageFlipping() ? " with page flipping" : " with buffer copies"));
+    }
+    GameJournal journal = null;
+    if (journalFile != null)
+    {
+      try {
+        journal = new GameJournal(Paths.get(journalFile), game.getEngine());
+        actor.setJournal(journal);
+      } catch (IOException e) {
+        System.err.println("Could not create journal " + journalFile + ": " + e.getMessage());
+      }
+    }
+    actor.start();
 
-    Scanner in = new Scanner(System.in);
-  String[] validCommands = { "right", "left", "up", "down", "r", "l", "u", "d",
-  "jump", "jr", "jumpleft", "jl", "jumpup", "ju", "jumpdown", "jd",
-  "pickup", "p", "quit", "q", "replay", "help", "?"};
-  
     // set up game
     boolean play = true;
+    if (script != null)
+    {
+      List<Command> commands = readScript(script);
+      if (commands == null)
+      {
+        game.closeWindow();
+        play = false;
+      }
+      else
+      {
+        play = runCommands(game, actor, printer, commands);
+      }
+    }
     while (play)
     {
       // prompt
@@ -75,114 +218,122 @@ public class EscapeRoom
         play = false;
         break;
       }
-      // if replay was triggered from GUI or console, reset console score to match GUI
-      if (game.consumeReplayedFlag())
-      {
-        score = 0;
-      }
       System.out.print("> ");
-      String cmd = UserInput.getValidInput(validCommands);
+      play = runCommands(game, actor, printer, UserInput.getCommands());
+    }
 
-      switch(cmd)
-      {
-        case "right":
-        case "r":
-          int deltaR = game.movePlayer(m, 0);
-          score += deltaR;
-          game.addToScore(deltaR);
-          break;
-        case "left":
-        case "l":
-          int deltaL = game.movePlayer(-m, 0);
-          score += deltaL;
-          game.addToScore(deltaL);
-          break;
-        case "up":
-        case "u":
-          int deltaU = game.movePlayer(0, -m);
-          score += deltaU;
-          game.addToScore(deltaU);
-          break;
-        case "down":
-        case "d":
-          int deltaD = game.movePlayer(0, m);
-          score += deltaD;
-          game.addToScore(deltaD);
-          break;
-
-        // jumps: move two spaces (2*m)
-        case "jump":
-        case "jr":
-          int deltaJR = game.movePlayer(2*m, 0);
-          score += deltaJR;
-          game.addToScore(deltaJR);
-          break;
-        case "jumpleft":
-        case "jl":
-          int deltaJL = game.movePlayer(-2*m, 0);
-          score += deltaJL;
-          game.addToScore(deltaJL);
-          break;
-        case "jumpup":
-        case "ju":
-          int deltaJU = game.movePlayer(0, -2*m);
-          score += deltaJU;
-          game.addToScore(deltaJU);
-          break;
-        case "jumpdown":
-        case "jd":
-          int deltaJD = game.movePlayer(0, 2*m);
-          score += deltaJD;
-          game.addToScore(deltaJD);
-          break;
-
-        case "pickup":
-        case "p":
-          int d = game.pickupPrize();
-          score += d;
-          game.addToScore(d);
-          break;
-
-        case "replay":
-          int r = game.replay();
-          score += r;
-          game.addToScore(r);
-          break;
-
-        case "help":
-        case "?":
-          System.out.println("Commands:");
-          System.out.println("  right/r, left/l, up/u, down/d    - move one space");
-          System.out.println("  jump/jr, jumpleft/jl, jumpup/ju, jumpdown/jd - jump two spaces");
-          System.out.println("  pickup/p                       - pick up prize at current location");
-          System.out.println("  replay                         - reset the board (penalty if not at end)");
-          System.out.println("  quit/q                         - quit the game");
-          break;
-
-        case "quit":
-        case "q":
-          // close GUI as well
-          game.closeWindow();
-          play = false;
-          break;
-
-        default:
-          // should not occur because UserInput validates commands
-          System.out.println("Unknown command: " + cmd);
+    // no more commands; finish the game on this thread
+    actor.stop();
+    if (journal != null)
+    {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        System.err.println("Could not finish journal " + journalFile + ": " + e.getMessage());
       }
+    }
+    GameEngine engine = game.getEngine();
+    engine.addToScore(game.endGame());
+    printer.stop();
+    if (metricsPeriod > 0)
+    {
+      metrics.stopDump();
+      System.err.print("[metrics] " + metrics.dump());
+    }
 
-      // display current score and steps after each action
-  System.out.println("score=" + score + " steps=" + game.getSteps() + " coins=" + game.getCoinsCollected());
-    
-      
+    System.out.println("score=" + engine.getScore());
+  System.out.println("steps=" + engine.getSteps() + " coins=" + engine.getCoinsCollected());
+  }
+
+  /*
+   * The value following an option, or an IllegalArgumentException naming the option if there is none
+   */
+  private static String value(String[] args, int i)
+  {
+    if (i >= args.length)
+      throw new IllegalArgumentException(args[i - 1] + " needs a value");
+    return args[i];
+  }
+
+  /*
+   * Apply the commands from one input line or script. A single command prints its messages as it goes; a batch is
+   * applied in one step on the game thread, with one repaint and one summary line, and its events are collected
+   * rather than printed. Commands after quit are ignored. Returns false once the player quits.
+   */
+  private static boolean runCommands(GameGUI game, GameActor actor, ConsoleEventPrinter printer,
+                                     List<Command> commands)
+  {
+    int quit = commands.indexOf(Command.QUIT);
+    if (quit >= 0)
+      commands = commands.subList(0, quit + 1);
+
+    if (commands.contains(Command.HELP))
+    {
+      System.out.println("Commands:");
+      System.out.println("  right/r, left/l, up/u, down/d    - move one space");
+      System.out.println("  jump/jr, jumpleft/jl, jumpup/ju, jumpdown/jd - jump two spaces");
+      System.out.println("  pickup/p                       - pick up prize at current location");
+      System.out.println("  replay                         - reset the board (penalty if not at end)");
+      System.out.println("  undo, redo                     - take back the last command, or apply it again");
+      System.out.println("  quit/q                         - quit the game");
+      System.out.println("  several commands on one line, e.g. \"r r jd p\", run as a batch");
     }
 
-  
+    // display current score and steps once the game thread has applied the commands
+    if (commands.size() == 1)
+    {
+      GameSnapshot s = actor.submit(commands.get(0)).join();
+      printer.flush();
+      System.out.println(s);
+    }
+    else
+    {
+      List<GameEvent> events = new ArrayList<GameEvent>();
+      GameSnapshot s = actor.submitAll(commands, events).join();
+      printer.flush();
+      System.out.println(s + " (" + commands.size() + " commands, " + events.size() + " events)");
+    }
 
-    score += game.endGame();
+    if (quit >= 0)
+    {
+      // close GUI as well
+      game.closeWindow();
+      return false;
+    }
+    return true;
+  }
 
-    System.out.println("score=" + score);
-  System.out.println("steps=" + game.getSteps() + " coins=" + game.getCoinsCollected());
+  /*
+   * Read the commands in a script file: whitespace separated, any number per line, # starts a comment.
+   * Returns null and reports the problem if the file can't be read or has an unknown command.
+   */
+  private static List<Command> readScript(String path)
+  {
+    List<Command> commands = new ArrayList<Command>();
+    try (BufferedReader in = new BufferedReader(new FileReader(path)))
+    {
+      int lineNumber = 0;
+      for (String line = in.readLine(); line != null; line = in.readLine())
+      {
+        lineNumber++;
+        int comment = line.indexOf('#');
+        if (comment >= 0)
+          line = line.substring(0, comment);
+        List<Command> parsed = UserInput.parseCommands(line);
+        if (parsed == null)
+        {
+          System.err.println(path + ":" + lineNumber + ": unknown command in \"" + line.trim() + "\"");
+          return null;
+        }
+        commands.addAll(parsed);
+      }
+    }
+    catch (IOException e)
+    {
+      System.err.println("Can't read script " + path + ": " + e.getMessage());
+      return null;
+    }
+    return commands;
   }
 }
 
@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a GameEngine on a single game-logic thread.
+ * <P>
+ * Any thread (the console loop, the Swing event thread) submits Command objects to a lock-free queue. The
+ * game-logic thread is the only one that touches the engine: it drains whatever commands are queued, applies them
+ * in order, and publishes one immutable GameSnapshot for the batch to its listeners and to the futures returned by
+ * submit(). This keeps score, steps, and coins consistent no matter where input comes from, and a burst of
+ * key-repeat events costs one snapshot rather than one per key.
+ *
+ * @version 1.0
+ */
+public class GameActor
+{
+  /**
+   * Receives each snapshot published by the game-logic thread. Called on that thread, so implementations
+   * should hand off any slow work.
+   */
+  public interface Listener
+  {
+    void snapshotPublished(GameSnapshot snapshot);
+  }
+
+  /*
+   * Queued commands, applied together, and the future completed once they have been applied.
+   */
+  private static class Request
+  {
+    final Command[] commands;
+    // where the engine's events go while these commands run; null to send them to its listeners
+    final List<GameEvent> events;
+    final CompletableFuture<GameSnapshot> result = new CompletableFuture<GameSnapshot>();
+
+    Request(Command[] commands, List<GameEvent> events)
+    {
+      this.commands = commands;
+      this.events = events;
+    }
+  }
+
+  private final GameEngine engine;
+  // multi-producer, single-consumer: any thread offers, only the game-logic thread polls
+  private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<Request>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+  private final Thread thread;
+  private volatile boolean running;
+  private volatile GameSnapshot latest;
+  // every applied command is recorded here when set
+  private GameJournal journal;
+  // every command is timed here when set
+  private GameMetrics metrics;
+
+  /**
+   * Create an actor for an engine. The engine must not be used directly by other threads once start() is called.
+   * <P>
+   * @param engine the game to run
+   */
+  public GameActor(GameEngine engine)
+  {
+    this.engine = engine;
+    latest = engine.snapshot();
+    thread = new Thread(this::run, "game-logic");
+    thread.setDaemon(true);
+  }
+
+  public void addListener(Listener l)
+  {
+    listeners.add(l);
+  }
+
+  /**
+   * Record every command the game-logic thread applies, with its score change. Call before start(); the journal
+   * is written on the game-logic thread and may be closed once stop() returns.
+   * <P>
+   * @param journal where to record commands, or null to stop recording
+   */
+  public void setJournal(GameJournal journal)
+  {
+    this.journal = journal;
+  }
+
+  /**
+   * Time every command the game-logic thread applies. Call before start().
+   * <P>
+   * @param metrics where to record command latencies, or null to stop timing
+   */
+  public void setMetrics(GameMetrics metrics)
+  {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Start the game-logic thread.
+   */
+  public void start()
+  {
+    running = true;
+    thread.start();
+  }
+
+  /**
+   * Queue a command. Safe to call from any thread.
+   * <P>
+   * @param command the command to apply
+   * @return a future completed with the snapshot published after the command was applied
+   */
+  public CompletableFuture<GameSnapshot> submit(Command command)
+  {
+    return enqueue(new Request(new Command[] { command }, null));
+  }
+
+  /**
+   * Queue a sequence of commands to be applied together. No other command runs between them, and only one
+   * snapshot is published for the whole sequence, so the window repaints once. The engine's events for each
+   * step are added to the given list instead of going to its listeners. Safe to call from any thread.
+   * <P>
+   * @param commands the commands to apply, in order
+   * @param events list the game events are added to; read it once the future completes
+   * @return a future completed with the snapshot published after the last command was applied
+   */
+  public CompletableFuture<GameSnapshot> submitAll(List<Command> commands, List<GameEvent> events)
+  {
+    return enqueue(new Request(commands.toArray(new Command[commands.size()]), events));
+  }
+
+  /**
+   * Return the most recently published snapshot.
+   */
+  public GameSnapshot getLatest()
+  {
+    return latest;
+  }
+
+  /**
+   * Apply any commands still queued, then stop the game-logic thread. Afterwards the engine may be used
+   * directly again by the calling thread.
+   */
+  public void stop()
+  {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private CompletableFuture<GameSnapshot> enqueue(Request r)
+  {
+    if (!running)
+    {
+      r.result.completeExceptionally(new IllegalStateException("game actor is not running"));
+      return r.result;
+    }
+    queue.offer(r);
+    LockSupport.unpark(thread);
+    // stop() may have run since the check above, and the game-logic thread may have exited without seeing r; take
+    // it back unless that thread already has it
+    if (!running && queue.remove(r))
+      r.result.completeExceptionally(new IllegalStateException("game actor is not running"));
+    return r.result;
+  }
+
+  private void run()
+  {
+    List<Request> batch = new ArrayList<Request>();
+    while (running || !queue.isEmpty())
+    {
+      Request r = queue.poll();
+      if (r == null)
+      {
+        LockSupport.park(this);
+        continue;
+      }
+
+      // apply everything queued so far, then publish once
+      do
+      {
+        engine.setEventLog(r.events);
+        try {
+          for (Command c : r.commands)
+          {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int delta = c.apply(engine);
+            if (metrics != null)
+              metrics.recordCommand(System.nanoTime() - start);
+            if (journal != null)
+              journal.record(c, delta);
+          }
+          batch.add(r);
+        } catch (RuntimeException e) {
+          r.result.completeExceptionally(e);
+        } finally {
+          engine.setEventLog(null);
+        }
+      }
+      while ((r = queue.poll()) != null);
+
+      // callers waiting on the batch are released first, so a failing listener can't leave them hanging
+      GameSnapshot s = engine.snapshot();
+      latest = s;
+      for (Request done : batch)
+        done.result.complete(s);
+      batch.clear();
+      for (Listener l : listeners)
+      {
+        try {
+          l.snapshotPublished(s);
+        } catch (RuntimeException e) {
+          System.err.println("Snapshot listener failed: " + e);
+        }
+      }
+    }
+
+    // anything offered as the thread was stopping, so no caller waits forever
+    for (Request r = queue.poll(); r != null; r = queue.poll())
+      r.result.completeExceptionally(new IllegalStateException("game actor is not running"));
+  }
+}
@@ -0,0 +1,1009 @@
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The rules and state of an escape room game, without any windowing.
+ * <P>
+ * The engine owns the board, the player location, score, steps, and coins, and implements the movement, trap,
+ * prize, replay, and end-of-game rules. GameGUI renders an engine; simulations can create and drive engines
+ * directly without a display. What happens in the game is reported as GameEvents to any registered listeners.
+ * <P>
+ * Locations passed to the pixel-based methods (movePlayer, isTrap, springTrap) use the same coordinates as the
+ * game window: the player is drawn at (col * SPACE_SIZE + START_LOC_X, row * SPACE_SIZE + START_LOC_Y).
+ *
+ * @author PLTW
+ * @version 1.0
+ */
+public class GameEngine
+{
+  public static final int SPACE_SIZE = 60;
+  public static final int GRID_W = 8;
+  public static final int GRID_H = 5;
+  public static final int START_LOC_X = 15;
+  public static final int START_LOC_Y = 15;
+  // traps and prizes are drawn as a small square at the player location of their cell
+  public static final int MARKER_SIZE = 15;
+
+  // sidebar fields reported by getDirtyFields()
+  public static final int DIRTY_SCORE = 1;
+  public static final int DIRTY_STEPS = 2;
+  public static final int DIRTY_COINS = 4;
+  public static final int DIRTY_PRIZES = 8;
+  public static final int DIRTY_TRAPS = 16;
+  public static final int DIRTY_WALLS = 32;
+  public static final int DIRTY_ALL_FIELDS = 63;
+  // more changed cells than this between clearDamage() calls are reported as a full redraw
+  private static final int MAX_DIRTY_CELLS = 16;
+  // oldest undo states are dropped beyond this, unless setUndoLimit() says otherwise
+  private static final int MAX_UNDO = 1000;
+  // Zobrist keys are derived from a fixed seed, so engines of the same size hash equal states equally
+  private static final long ZOBRIST_SEED = 0x2545F4914F6CDD1DL;
+  private static final int ZOBRIST_PLAYER = 0;
+  private static final int ZOBRIST_TRAP = 1;
+  private static final int ZOBRIST_PRIZE = 2;
+  // Zobrist keys of the first this many cells are kept in a table shared by every engine; the rest are computed
+  private static final int ZOBRIST_TABLE_CELLS = 1 << 16;
+
+  private final Board board;
+
+  // player location in cells
+  private int col;
+  private int row;
+  private int playerSteps;
+  // running score from every action applied through addToScore
+  private int score = 0;
+  // number of prizes picked up
+  private int coinsCollected = 0;
+
+  // number of walls, prizes, traps to create
+  private int totalWalls;
+  private int totalPrizes;
+  private int totalTraps;
+
+  // scores, sometimes awarded as (negative) penalties
+  private int prizeVal = 10;
+  private int trapVal = 5;
+  private int endVal = 10;
+  private int offGridVal = 5; // penalty only
+  private int hitWallVal = 5;  // penalty only
+
+  // seed the current board was generated from
+  private long seed;
+  // incremented whenever the board is generated or reset, so renderers know when cached layers are stale
+  private int boardVersion;
+  // incremented whenever walls are generated; saved states only apply to the layout they came from
+  private int layoutVersion;
+  // Zobrist hash of the layout, player cell, and remaining traps and prizes, updated with every change
+  private long positionHash;
+  // states saved by checkpoint(), most recent first
+  private final ArrayDeque<GameState> undoStates = new ArrayDeque<GameState>();
+  private final ArrayDeque<GameState> redoStates = new ArrayDeque<GameState>();
+  private int undoLimit = MAX_UNDO;
+  // when set, walls are repaired so the far right column and every prize can be reached
+  private boolean solvable = false;
+  private SolvableWalls solvableWalls;
+  // walls in placement order, for the solvable repair
+  private int[] placedWalls = new int[0];
+
+  // damage since the last clearDamage(): changed cells, changed sidebar fields, or everything
+  private final int[] dirtyCells = new int[MAX_DIRTY_CELLS];
+  private int dirtyCellCount;
+  private int dirtyFields;
+  private boolean fullyDirty = true;
+
+  private final List<GameEvent.Listener> listeners = new CopyOnWriteArrayList<GameEvent.Listener>();
+  // when set, events are collected here instead of going to the listeners
+  private List<GameEvent> eventLog;
+  // when set, every event is counted here, whether or not anyone is listening
+  private GameMetrics metrics;
+
+  // flag set when replay() is called so external controllers can react
+  private volatile boolean replayedFlag = false;
+
+  /**
+   * Create an engine for the default 8x5 board.
+   */
+  public GameEngine()
+  {
+    this(GRID_W, GRID_H);
+  }
+
+  /**
+   * Create an engine for a board of the given size.
+   * <P>
+   * precondition: cols and rows must be positive, non-zero integers
+   * <P>
+   * @param cols number of cells across
+   * @param rows number of cells down
+   */
+  public GameEngine(int cols, int rows)
+  {
+    board = new Board(cols, rows);
+    rehash();
+
+    // set default config
+    totalWalls = 20;
+    totalPrizes = 3;
+    totalTraps = 5;
+  }
+
+  /*
+   * A copy of an engine for copy(): the board is shared copy-on-write
+   */
+  private GameEngine(GameEngine other)
+  {
+    board = other.board.copy();
+    col = other.col;
+    row = other.row;
+    playerSteps = other.playerSteps;
+    score = other.score;
+    coinsCollected = other.coinsCollected;
+    totalWalls = other.totalWalls;
+    totalPrizes = other.totalPrizes;
+    totalTraps = other.totalTraps;
+    prizeVal = other.prizeVal;
+    trapVal = other.trapVal;
+    endVal = other.endVal;
+    offGridVal = other.offGridVal;
+    hitWallVal = other.hitWallVal;
+    seed = other.seed;
+    boardVersion = other.boardVersion;
+    layoutVersion = other.layoutVersion;
+    positionHash = other.positionHash;
+    solvable = other.solvable;
+  }
+
+  /**
+   * Return a new engine on this board, in the same state and with the same configuration and scores, but with no
+   * listeners, metrics, or undo history. States saved from either engine can be restored on the other, so the copy
+   * can apply commands to work something out without touching this engine. Copying costs one pointer per chunk of the
+   * board, which the two engines share until one of them changes it.
+   */
+  public GameEngine copy()
+  {
+    return new GameEngine(this);
+  }
+
+ /**
+  * Adds the walls, prizes, and traps to the gameboard from a random seed.
+  * Note that traps and prizes may occupy the same location.
+  */
+  public void createBoard()
+  {
+    createBoard(ThreadLocalRandom.current().nextLong());
+  }
+
+ /**
+  * Adds the walls, prizes, and traps to the gameboard. The same seed and configuration always produce the same
+  * board, and engines on different threads can generate boards in parallel without sharing any state.
+  * <P>
+  * @param seed seed for the board layout, see getSeed()
+  */
+  public void createBoard(long seed)
+  {
+    this.seed = seed;
+    boardVersion++;
+    layoutVersion++;
+    undoStates.clear();
+    redoStates.clear();
+    fullyDirty = true;
+    board.clear();
+
+    // each kind of element gets its own stream, so changing one count doesn't move the others
+    SplittableRandom rand = new SplittableRandom(seed);
+    createTraps(rand.split());
+    createPrizes(rand.split());
+    createWalls(rand.split());
+    rehash();
+  }
+
+  /**
+   * Increment/decrement the player location by the amount designated.
+   * This method checks for bumping into walls and going off the grid,
+   * both of which result in a penalty.
+   * <P>
+   * precondition: incrx and incry are multiples of SPACE_SIZE and only one of them is non-zero
+   * postcondition: increases number of steps even if the player did not actually move (e.g. bumping into a wall)
+   * <P>
+   * @param incrx amount to move player in x direction
+   * @param incry amount to move player in y direction
+   * @return penalty score for hitting a wall or going off the grid, otherwise the score for traps and prizes
+   */
+  public int movePlayer(int incrx, int incry)
+  {
+    return movePlayerByCells(incrx / SPACE_SIZE, incry / SPACE_SIZE);
+  }
+
+  /**
+   * Move the player a number of cells in a straight line, springing any trap or picking up any prize where
+   * the player lands.
+   * <P>
+   * precondition: only one of cellsX and cellsY is non-zero
+   * postcondition: increases number of steps even if the player did not actually move (e.g. bumping into a wall)
+   * <P>
+   * @param cellsX number of cells to move right (positive) or left (negative)
+   * @param cellsY number of cells to move down (positive) or up (negative)
+   * @return penalty score for hitting a wall or going off the grid, otherwise the score for traps and prizes
+   */
+  public int movePlayerByCells(int cellsX, int cellsY)
+  {
+    int newCol = col + cellsX;
+    int newRow = row + cellsY;
+
+    // increment regardless of whether player really moves
+    playerSteps++;
+    dirtyFields |= DIRTY_STEPS;
+
+    // check if off grid horizontally and vertically
+    int to = board.cell(newCol, newRow);
+    if (to < 0)
+    {
+      publish(GameEvent.Type.OFF_GRID, col, row, -offGridVal);
+      return -offGridVal;
+    }
+
+    // determine if a wall is in the way, checking every cell edge crossed by the move
+    if (board.isBlocked(board.cell(col, row), cellsX, cellsY))
+    {
+      publish(GameEvent.Type.BLOCKED_BY_WALL, col, row, -hitWallVal);
+      return -hitWallVal;
+    }
+
+    // all is well, move player
+    int from = board.cell(col, row);
+    markDirty(from);
+    markDirty(to);
+    positionHash ^= zobrist(from, ZOBRIST_PLAYER) ^ zobrist(to, ZOBRIST_PLAYER);
+    col = newCol;
+    row = newRow;
+    publish(GameEvent.Type.MOVED, col, row, 0);
+
+    // after moving, automatically activate the trap (if any) at the new location
+    int delta = 0;
+    boolean trapFound = board.clearTrap(to);
+    if (trapFound)
+    {
+      publish(GameEvent.Type.TRAP_SPRUNG, col, row, trapVal);
+      positionHash ^= zobrist(to, ZOBRIST_TRAP);
+      delta += trapVal;
+      dirtyFields |= DIRTY_TRAPS;
+    }
+
+    // if no trap hid the prize, auto-pickup any prize at this location (no penalty when none)
+    if (!trapFound && board.clearPrize(to))
+    {
+      coinsCollected++;
+      publish(GameEvent.Type.PRIZE_COLLECTED, col, row, prizeVal);
+      positionHash ^= zobrist(to, ZOBRIST_PRIZE);
+      delta += prizeVal;
+      dirtyFields |= DIRTY_PRIZES | DIRTY_COINS;
+    }
+    return delta;
+  }
+
+  /**
+   * Add delta to the running score.
+   */
+  public void addToScore(int delta)
+  {
+    score += delta;
+    if (delta != 0)
+      dirtyFields |= DIRTY_SCORE;
+  }
+
+  /**
+   * Check the space adjacent to the player for a trap. The adjacent location is one space away from the player,
+   * designated by newx, newy.
+   * <P>
+   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go undetected
+   * <P>
+   * @param newx a location indicating the space to the right or left of the player
+   * @param newy a location indicating the space above or below the player
+   * @return true if the new location has a trap that has not been sprung, false otherwise
+   */
+  public boolean isTrap(int newx, int newy)
+  {
+    int cell = markerCellAt(getPlayerX() + newx, getPlayerY() + newy);
+
+    // sprung traps are cleared from the board, so only active traps are found
+    if (cell >= 0 && board.hasTrap(cell))
+    {
+      publish(GameEvent.Type.TRAP_AHEAD, board.colOf(cell), board.rowOf(cell), 0);
+      return true;
+    }
+    // there is no trap where player wants to go
+    return false;
+  }
+
+  /**
+   * Spring the trap. Traps can only be sprung once and attempts to spring
+   * a sprung task results in a penalty.
+   * <P>
+   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go unsprung
+   * <P>
+   * @param newx a location indicating the space to the right or left of the player
+   * @param newy a location indicating the space above or below the player
+   * @return a positive score if a trap is sprung, otherwise a negative penalty for trying to spring a non-existent trap
+   */
+  public int springTrap(int newx, int newy)
+  {
+    int cell = markerCellAt(getPlayerX() + newx, getPlayerY() + newy);
+
+    // sprung traps are cleared from the board, so a trap can only be sprung once
+    if (cell >= 0 && board.clearTrap(cell))
+    {
+      publish(GameEvent.Type.TRAP_SPRUNG, board.colOf(cell), board.rowOf(cell), trapVal);
+      positionHash ^= zobrist(cell, ZOBRIST_TRAP);
+      markDirty(cell);
+      dirtyFields |= DIRTY_TRAPS;
+      return trapVal;
+    }
+    // no trap here, penalty
+    publish(GameEvent.Type.NO_TRAP, col, row, -trapVal);
+    return -trapVal;
+  }
+
+  /**
+   * Pickup a prize and score points. If no prize is in that location, this results in a penalty.
+   * <P>
+   * @return positive score if a location had a prize to be picked up, otherwise a negative penalty
+   */
+  public int pickupPrize()
+  {
+    // if location has a prize, pick it up
+    if (board.clearPrize(board.cell(col, row)))
+    {
+      publish(GameEvent.Type.PRIZE_COLLECTED, col, row, prizeVal);
+      positionHash ^= zobrist(board.cell(col, row), ZOBRIST_PRIZE);
+      coinsCollected++;
+      markDirty(board.cell(col, row));
+      dirtyFields |= DIRTY_PRIZES | DIRTY_COINS;
+      return prizeVal;
+    }
+    publish(GameEvent.Type.NO_PRIZE, col, row, -prizeVal);
+    return -prizeVal;
+  }
+
+  /**
+   * Reset the board to replay existing game. The method can be called at any time but results in a penalty if called
+   * before the player reaches the far right wall.
+   * <P>
+   * @return positive score for reaching the far right wall, penalty otherwise
+   */
+  public int replay()
+  {
+    int win = playerAtEnd();
+
+    // restore prizes and traps to "reactivate" them
+    board.resetItems();
+    boardVersion++;
+    fullyDirty = true;
+
+    // move player to start of board
+    col = 0;
+    row = 0;
+    playerSteps = 0;
+    // reset score and coins when replaying
+    score = 0;
+    coinsCollected = 0;
+    rehash();
+    replayedFlag = true;
+    return win;
+  }
+
+  /**
+   * Returns true if replay() was called since last checked.
+   * External code should call this and then clear/handle the replay event.
+   */
+  public boolean consumeReplayedFlag()
+  {
+    boolean v = replayedFlag;
+    replayedFlag = false;
+    return v;
+  }
+
+ /**
+  * End the game, checking if the player made it to the far right wall.
+  * <P>
+  * @return positive score for reaching the far right wall, penalty otherwise
+  */
+  public int endGame()
+  {
+    return playerAtEnd();
+  }
+
+  /**
+   * Save the current location, score, steps, coins, traps, and prizes. This is O(1): the state shares the board's
+   * trap and prize chunks until the board next changes them.
+   * <P>
+   * @return the saved state, which can be restored with restoreState() until a new board is created
+   */
+  public GameState saveState()
+  {
+    return new GameState(layoutVersion, board.fingerprint(), positionHash, getStateHash(), col, row, playerSteps,
+                         score, coinsCollected, board.shareTraps(), board.sharePrizes());
+  }
+
+  /**
+   * Return the game to a saved state. Solvers and bots can save a state once and branch from it any number of
+   * times.
+   * <P>
+   * precondition: the state was saved from this engine, or a copy() of it, since the last createBoard()
+   * <P>
+   * @param state the state to return to
+   * @throws IllegalArgumentException if the state was saved on another layout
+   */
+  public void restoreState(GameState state)
+  {
+    // copies count layouts separately, so the same version on two engines can be different walls
+    if (state.getLayout() != layoutVersion || state.getFingerprint() != board.fingerprint())
+      throw new IllegalArgumentException("state was saved from a different board");
+    col = state.getPlayerCol();
+    row = state.getPlayerRow();
+    playerSteps = state.getSteps();
+    score = state.getScore();
+    coinsCollected = state.getCoinsCollected();
+    board.restoreItems(state.getTraps(), state.getPrizes());
+    positionHash = state.getPositionHash();
+    // any trap or prize may have come back
+    fullyDirty = true;
+    dirtyFields = DIRTY_ALL_FIELDS;
+  }
+
+  /**
+   * Return a 64-bit Zobrist hash of the board layout, the player location, and the traps and prizes still on the
+   * board. It is updated incrementally as the player moves and items are cleared, so reading it is free; states
+   * that differ only in score, steps, or coins have the same position hash.
+   */
+  public long getPositionHash()
+  {
+    return positionHash;
+  }
+
+  /**
+   * Return a 64-bit hash of the whole game state: the position hash combined with the steps, score, and coins.
+   */
+  public long getStateHash()
+  {
+    long h = Board.mix(playerSteps + ZOBRIST_SEED);
+    h = Board.mix(h ^ score);
+    h = Board.mix(h ^ coinsCollected);
+    return positionHash ^ h;
+  }
+
+  /**
+   * Save the current state for undo() and forget anything that could be redone. Called before each command.
+   */
+  public void checkpoint()
+  {
+    redoStates.clear();
+    if (undoLimit == 0)
+      return;
+    undoStates.push(saveState());
+    if (undoStates.size() > undoLimit)
+      undoStates.removeLast();
+  }
+
+  /**
+   * Set how many commands undo() can take back; 1000 by default. Each saved state is small, but it keeps the trap
+   * and prize chunks it shares from being reclaimed, so hosts running many games, like GameServer, keep it short.
+   * Lowering the limit drops the oldest states at once.
+   * <P>
+   * precondition: limit is not negative
+   * <P>
+   * @param limit most states kept for undo(), or 0 to turn undo off
+   */
+  public void setUndoLimit(int limit)
+  {
+    if (limit < 0)
+      throw new IllegalArgumentException("undo limit must not be negative: " + limit);
+    undoLimit = limit;
+    while (undoStates.size() > limit)
+      undoStates.removeLast();
+    while (redoStates.size() > limit)
+      redoStates.removeLast();
+  }
+
+  /**
+   * Forget every state saved for undo() and redo().
+   */
+  public void clearUndo()
+  {
+    undoStates.clear();
+    redoStates.clear();
+  }
+
+  /**
+   * Return to the state saved by the most recent checkpoint(), including its score.
+   * <P>
+   * @return true if there was a state to return to
+   */
+  public boolean undo()
+  {
+    GameState s = undoStates.poll();
+    if (s == null)
+      return false;
+    redoStates.push(saveState());
+    restoreState(s);
+    return true;
+  }
+
+  /**
+   * Reapply the state most recently left by undo().
+   * <P>
+   * @return true if there was a state to return to
+   */
+  public boolean redo()
+  {
+    GameState s = redoStates.poll();
+    if (s == null)
+      return false;
+    undoStates.push(saveState());
+    restoreState(s);
+    return true;
+  }
+
+  /**
+   * Return the seed the current board was generated from, so the board can be recreated with createBoard(long).
+   */
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Return true if the whole board and sidebar need redrawing, e.g. after createBoard() or replay(),
+   * or when too many cells changed to list since the last clearDamage().
+   */
+  public boolean isFullyDirty()
+  {
+    return fullyDirty;
+  }
+
+  /**
+   * Return the number of cells whose contents changed since the last clearDamage().
+   */
+  public int getDirtyCellCount()
+  {
+    return dirtyCellCount;
+  }
+
+  /**
+   * Return the i-th changed cell, 0 &lt;= i &lt; getDirtyCellCount(). A cell may be listed more than once.
+   */
+  public int getDirtyCell(int i)
+  {
+    return dirtyCells[i];
+  }
+
+  /**
+   * Return the sidebar fields changed since the last clearDamage(), as DIRTY_ flags.
+   */
+  public int getDirtyFields()
+  {
+    return fullyDirty ? DIRTY_ALL_FIELDS : dirtyFields;
+  }
+
+  /**
+   * Forget the changes reported so far, once they have been redrawn.
+   */
+  public void clearDamage()
+  {
+    dirtyCellCount = 0;
+    dirtyFields = 0;
+    fullyDirty = false;
+  }
+
+  /**
+   * Return an immutable snapshot of the game, including the damage since the previous snapshot, and clear
+   * the damage.
+   */
+  public GameSnapshot snapshot()
+  {
+    int[] cells = java.util.Arrays.copyOf(dirtyCells, fullyDirty ? 0 : dirtyCellCount);
+    GameSnapshot s = new GameSnapshot(board.copy(), boardVersion, seed, col, row, score, playerSteps,
+                                      coinsCollected, fullyDirty, getDirtyFields(), cells);
+    clearDamage();
+    return s;
+  }
+
+  /**
+   * Return a counter that changes whenever createBoard() or replay() changes the board.
+   */
+  public int getBoardVersion()
+  {
+    return boardVersion;
+  }
+
+  public Board getBoard()
+  {
+    return board;
+  }
+
+  /**
+   * Return the column of the cell the player is on.
+   */
+  public int getPlayerCol()
+  {
+    return col;
+  }
+
+  /**
+   * Return the row of the cell the player is on.
+   */
+  public int getPlayerRow()
+  {
+    return row;
+  }
+
+  /**
+   * Return the x location the player is drawn at.
+   */
+  public int getPlayerX()
+  {
+    return col * SPACE_SIZE + START_LOC_X;
+  }
+
+  /**
+   * Return the y location the player is drawn at.
+   */
+  public int getPlayerY()
+  {
+    return row * SPACE_SIZE + START_LOC_Y;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  /**
+   * Return the number of prizes picked up so far.
+   */
+  public int getCoinsCollected()
+  {
+    return coinsCollected;
+  }
+
+  /**
+   * Return the numbers of steps the player has taken.
+   * <P>
+   * @return the number of steps
+   */
+  public int getSteps()
+  {
+    return playerSteps;
+  }
+
+  public int getRemainingPrizes()
+  {
+    return board.getRemainingPrizes();
+  }
+
+  public int getRemainingTraps()
+  {
+    return board.getRemainingTraps();
+  }
+
+  public int getRemainingWalls()
+  {
+    return board.getRemainingWalls();
+  }
+
+  public int getPrizeVal()
+  {
+    return prizeVal;
+  }
+
+  public int getTrapVal()
+  {
+    return trapVal;
+  }
+
+  public int getEndVal()
+  {
+    return endVal;
+  }
+
+  public int getOffGridVal()
+  {
+    return offGridVal;
+  }
+
+  public int getHitWallVal()
+  {
+    return hitWallVal;
+  }
+
+  /**
+   * Set the designated number of prizes in the game.  This can be used to customize the gameboard configuration.
+   * <P>
+   * precondition p must be a positive, non-zero integer
+   * <P>
+   * @param p number of prizes to create
+   */
+  public void setPrizes(int p)
+  {
+    totalPrizes = p;
+  }
+
+  public int getPrizes()
+  {
+    return totalPrizes;
+  }
+
+  /**
+   * Set the designated number of traps in the game. This can be used to customize the gameboard configuration.
+   * <P>
+   * precondition t must be a positive, non-zero integer
+   * <P>
+   * @param t number of traps to create
+   */
+  public void setTraps(int t)
+  {
+    totalTraps = t;
+  }
+
+  public int getTraps()
+  {
+    return totalTraps;
+  }
+
+  /**
+   * Choose whether generated boards are guaranteed to be solvable. When set, createBoard() checks that the far
+   * right column and every prize can be reached from the start, and moves walls until they can. The default is
+   * off, which places walls purely at random as before.
+   * <P>
+   * @param s true to generate only solvable boards
+   */
+  public void setSolvable(boolean s)
+  {
+    solvable = s;
+  }
+
+  public boolean isSolvable()
+  {
+    return solvable;
+  }
+
+  /**
+   * Set the designated number of walls in the game. This can be used to customize the gameboard configuration.
+   * Walls go on distinct cell edges, so a board gets exactly this many, solvable or not, unless it has fewer edges.
+   * <P>
+   * precondition t must be a positive, non-zero integer
+   * <P>
+   * @param w number of walls to create
+   */
+  public void setWalls(int w)
+  {
+    totalWalls = w;
+  }
+
+  public int getWalls()
+  {
+    return totalWalls;
+  }
+
+  /**
+   * Register a listener for the events of this game. Listeners are called on the thread applying the rules.
+   */
+  public void addListener(GameEvent.Listener l)
+  {
+    listeners.add(l);
+  }
+
+  public void removeListener(GameEvent.Listener l)
+  {
+    listeners.remove(l);
+  }
+
+  /**
+   * Collect events in a list instead of sending them to the listeners, for example while a batch of commands is
+   * applied.
+   * <P>
+   * @param log list to add events to, or null to send them to the listeners again
+   */
+  public void setEventLog(List<GameEvent> log)
+  {
+    eventLog = log;
+  }
+
+  /**
+   * Count every event of this game (wall hits, off-grid moves, traps sprung, prizes, ...) in a GameMetrics. Counting
+   * allocates nothing, so it doesn't need a listener.
+   * <P>
+   * @param metrics where to count events, or null to stop counting
+   */
+  public void setMetrics(GameMetrics metrics)
+  {
+    this.metrics = metrics;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Zobrist key for a player, trap, or prize on a cell. Keys don't depend on the board's size or seed, so cells
+   * below ZOBRIST_TABLE_CELLS look theirs up in one table every engine shares, and cells beyond it compute theirs;
+   * the table holds the same keys, so hashes don't depend on which is used.
+   */
+  private static long zobrist(int cell, int kind)
+  {
+    if (cell < ZOBRIST_TABLE_CELLS)
+      return ZobristTable.KEYS[cell * 3 + kind];
+    return zobristKey((long)cell * 3 + kind);
+  }
+
+  private static long zobristKey(long index)
+  {
+    return Board.mix(index * 0x9E3779B97F4A7C15L + ZOBRIST_SEED);
+  }
+
+  /*
+   * Holder for the shared key table (1.5 MB), built the first time a key is looked up
+   */
+  private static class ZobristTable
+  {
+    static final long[] KEYS = new long[ZOBRIST_TABLE_CELLS * 3];
+
+    static
+    {
+      for (int i = 0; i < KEYS.length; i++)
+        KEYS[i] = zobristKey(i);
+    }
+  }
+
+  /*
+   * Compute the position hash from scratch, after the layout or every item has changed
+   */
+  private void rehash()
+  {
+    long h = board.fingerprint() ^ zobrist(board.cell(col, row), ZOBRIST_PLAYER);
+    for (int c = board.nextTrap(0); c >= 0; c = board.nextTrap(c + 1))
+      h ^= zobrist(c, ZOBRIST_TRAP);
+    for (int c = board.nextPrize(0); c >= 0; c = board.nextPrize(c + 1))
+      h ^= zobrist(c, ZOBRIST_PRIZE);
+    positionHash = h;
+  }
+
+  /*
+   * Send an event to the event log or the listeners. Nothing is allocated when no one is listening.
+   */
+  private void publish(GameEvent.Type type, int eventCol, int eventRow, int points)
+  {
+    if (metrics != null)
+      metrics.countEvent(type);
+    if (eventLog != null)
+    {
+      eventLog.add(new GameEvent(type, eventCol, eventRow, points));
+    }
+    else if (!listeners.isEmpty())
+    {
+      GameEvent e = new GameEvent(type, eventCol, eventRow, points);
+      for (GameEvent.Listener l : listeners)
+        l.gameEvent(e);
+    }
+  }
+
+  /*
+   * Add randomly placed prizes to be picked up.
+   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   */
+  private void createPrizes(SplittableRandom rand)
+  {
+    for (int numPrizes = 0; numPrizes < totalPrizes; numPrizes++)
+    {
+      int h = rand.nextInt(board.getRows());
+      int w = rand.nextInt(board.getCols());
+
+      board.addPrize(board.cell(w, h));
+    }
+  }
+
+  /*
+   * Add randomly placed traps to the board. They will be painted white and appear invisible.
+   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   */
+  private void createTraps(SplittableRandom rand)
+  {
+    for (int numTraps = 0; numTraps < totalTraps; numTraps++)
+    {
+      int h = rand.nextInt(board.getRows());
+      int w = rand.nextInt(board.getCols());
+
+      board.addTrap(board.cell(w, h));
+    }
+  }
+
+  /*
+   * Add walls to the board in distinct random locations, then repair them if only solvable boards are wanted. A
+   * location already holding a wall is drawn again, so the board gets exactly totalWalls walls, or one on every
+   * cell edge if it has fewer than that.
+   */
+  private void createWalls(SplittableRandom rand)
+  {
+    int walls = (int)Math.min(totalWalls, 2L * board.getCellCount());
+    if (placedWalls.length < walls)
+      placedWalls = new int[walls];
+    int placed = 0;
+
+    while (placed < walls)
+    {
+      int h = rand.nextInt(board.getRows());
+      int w = rand.nextInt(board.getCols());
+      int c = board.cell(w, h);
+
+      if (rand.nextInt(2) == 0)
+      {
+        // vertical wall, on the right edge of the cell
+        if (board.hasVerticalWall(c))
+          continue;
+        placedWalls[placed++] = c * 2;
+        board.addVerticalWall(c);
+      }
+      else
+      {
+        // horizontal, on the bottom edge of the cell
+        if (board.hasHorizontalWall(c))
+          continue;
+        placedWalls[placed++] = c * 2 + 1;
+        board.addHorizontalWall(c);
+      }
+    }
+
+    if (solvable)
+    {
+      if (solvableWalls == null)
+        solvableWalls = new SolvableWalls();
+      solvableWalls.repair(board, placedWalls, placed, rand, walls);
+    }
+  }
+
+  /*
+   * Record a changed cell, falling back to a full redraw once the list is full.
+   */
+  private void markDirty(int cell)
+  {
+    if (fullyDirty)
+      return;
+    if (dirtyCellCount == dirtyCells.length)
+      fullyDirty = true;
+    else
+      dirtyCells[dirtyCellCount++] = cell;
+  }
+
+  /*
+   * Return the board cell whose trap/prize marker contains the point, or -1 if the point is not on a marker.
+   */
+  private int markerCellAt(int px, int py)
+  {
+    int ox = px - START_LOC_X;
+    int oy = py - START_LOC_Y;
+    if (ox < 0 || oy < 0 || ox % SPACE_SIZE >= MARKER_SIZE || oy % SPACE_SIZE >= MARKER_SIZE)
+      return -1;
+    return board.cell(ox / SPACE_SIZE, oy / SPACE_SIZE);
+  }
+
+  /**
+   * Checks if player as at the far right of the board
+   * @return positive score for reaching the far right wall, penalty otherwise
+   */
+  private int playerAtEnd()
+  {
+    int score;
+
+    if (col == board.getCols() - 1)
+    {
+      score = endVal;
+      publish(GameEvent.Type.REACHED_END, col, row, score);
+    }
+    else
+    {
+      score = -endVal;
+      publish(GameEvent.Type.QUIT_EARLY, col, row, score);
+    }
+    return score;
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Something that happened in a game: a move, a wall or the edge of the board getting in the way, a trap, a prize,
+ * or the end of a game.
+ * <P>
+ * A GameEngine publishes events to its listeners as it applies the rules. Events are only created when a listener
+ * is registered (or a batch is collecting them), so headless runs pay nothing for them. ConsoleEventPrinter prints
+ * the classic console messages from these events.
+ *
+ * @version 1.0
+ */
+public class GameEvent
+{
+  /**
+   * Receives the events of a game. Called on the thread applying the rules, so implementations should hand off
+   * any slow work.
+   */
+  public interface Listener
+  {
+    void gameEvent(GameEvent event);
+  }
+
+  /**
+   * The kinds of event, with the console message for each (null for events the console does not report).
+   */
+  public enum Type
+  {
+    MOVED(null),
+    OFF_GRID("OFF THE GRID!"),
+    BLOCKED_BY_WALL("A WALL IS IN THE WAY"),
+    TRAP_AHEAD("A TRAP IS AHEAD"),
+    TRAP_SPRUNG("TRAP IS SPRUNG!"),
+    NO_TRAP("THERE IS NO TRAP HERE TO SPRING"),
+    PRIZE_COLLECTED("YOU PICKED UP A PRIZE!"),
+    NO_PRIZE("OOPS, NO PRIZE HERE"),
+    REACHED_END("YOU MADE IT!"),
+    QUIT_EARLY("OOPS, YOU QUIT TOO SOON!");
+
+    private final String message;
+
+    Type(String message)
+    {
+      this.message = message;
+    }
+
+    public String getMessage()
+    {
+      return message;
+    }
+  }
+
+  private final Type type;
+  private final int col;
+  private final int row;
+  private final int points;
+
+  /**
+   * Create an event.
+   * <P>
+   * @param type what happened
+   * @param col column of the cell it happened at
+   * @param row row of the cell it happened at
+   * @param points score change caused by the event (negative for a penalty)
+   */
+  public GameEvent(Type type, int col, int row, int points)
+  {
+    this.type = type;
+    this.col = col;
+    this.row = row;
+    this.points = points;
+  }
+
+  public Type getType()
+  {
+    return type;
+  }
+
+  /**
+   * Return the column of the cell the event happened at: where the player landed for MOVED, the trap cell for
+   * TRAP_AHEAD and TRAP_SPRUNG, and otherwise the player's cell.
+   */
+  public int getCol()
+  {
+    return col;
+  }
+
+  public int getRow()
+  {
+    return row;
+  }
+
+  /**
+   * Return the score change caused by the event, negative for a penalty.
+   */
+  public int getPoints()
+  {
+    return points;
+  }
+
+  @Override
+  public String toString()
+  {
+    return type + " at " + col + "," + row + (points != 0 ? " (" + points + ")" : "");
+  }
+}
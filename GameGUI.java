@@ -1,23 +1,36 @@
 import java.awt.Color;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Rectangle;
 import java.awt.Image;
-import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
-import java.io.File;
-import javax.imageio.ImageIO;
-
-import java.util.Random;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A Game board on which to place and move players.
- * 
+ * <P>
+ * The rules and state live in a GameEngine; this component paints snapshots of the engine and routes keyboard
+ * input to it, either directly or through a GameActor running the engine on its own thread.
+ * <P>
+ * Boards larger than the window are shown through a viewport that follows the player. Only the cells inside the
+ * viewport are drawn, so the cost of a frame does not depend on the size of the board.
+ * <P>
+ * By default the component repaints the damage of each snapshot it is shown; startActiveRendering() hands the
+ * window over to an ActiveRenderer drawing at a fixed frame rate instead.
+ *
  * @author PLTW
  * @version 1.0
  */
@@ -32,50 +45,91 @@ public class GameGUI extends JComponent implements KeyListener
   private static final int WINDOW_WIDTH = WIDTH + SIDEBAR_WIDTH;
   // slightly larger sidebar for clearer counters
   // (we'll update SIDEBAR_WIDTH value below)
-  private static final int SPACE_SIZE = 60;
-  private static final int GRID_W = 8;
-  private static final int GRID_H = 5;
-  private static final int START_LOC_X = 15;
-  private static final int START_LOC_Y = 15;
-  
-  // initial placement of player
-  int x = START_LOC_X; 
-  int y = START_LOC_Y;
+  private static final int SPACE_SIZE = GameEngine.SPACE_SIZE;
+  private static final int START_LOC_X = GameEngine.START_LOC_X;
+  private static final int START_LOC_Y = GameEngine.START_LOC_Y;
+  private static final int MARKER_SIZE = GameEngine.MARKER_SIZE;
+  private static final int PLAYER_SIZE = 40;
+  // how far walls and grid lines reach past the last cell of the board
+  private static final int GRID_MARGIN = 8;
+
+  // image files, loaded in the background by the shared AssetManager; placeholders are drawn until they arrive
+  private static final String GRID_FILE = "grid.png";
+  private static final String PRIZE_FILE = "coin.png";
+  // student can customize this image by changing file on disk
+  private static final String PLAYER_FILE = "player.png";
+  private static final String[] ASSET_FILES = { GRID_FILE, PRIZE_FILE, PLAYER_FILE };
+  // sizes of the stock grid and coin images, for their placeholders
+  private static final int GRID_IMAGE_W = GameEngine.GRID_W * SPACE_SIZE + GRID_MARGIN - 1;
+  private static final int GRID_IMAGE_H = GameEngine.GRID_H * SPACE_SIZE + GRID_MARGIN;
+  private static final int PRIZE_SIZE = 31;
+
+  // sidebar rows redrawn for each GameEngine.DIRTY_ flag, as {flag, top, bottom} around the text baselines
+  private static final int[][] SIDEBAR_FIELDS = {
+    { GameEngine.DIRTY_SCORE, 60, 86 },
+    { GameEngine.DIRTY_STEPS, 92, 110 },
+    { GameEngine.DIRTY_COINS, 112, 130 },
+    { GameEngine.DIRTY_PRIZES, 137, 155 },
+    { GameEngine.DIRTY_TRAPS, 157, 175 },
+    { GameEngine.DIRTY_WALLS, 177, 195 },
+  };
+
+  // colors used every frame, built once
+  private static final Color SIDEBAR_COLOR = new Color(0xE8E8E8);
+  private static final Color SCORE_COLOR = new Color(0x1A73E8); // blue score
+
+  // game rules and state
+  private final GameEngine engine;
+  // latest published picture of the game; everything painted comes from here
+  private volatile GameSnapshot view;
+  // when set, keyboard commands are queued to the game-logic thread instead of applied on the event thread
+  private GameActor actor;
+  // paints and repaint latencies are recorded here when set
+  private volatile GameMetrics metrics;
+  // System.nanoTime() when the oldest snapshot not yet painted was shown, 0 if every snapshot has been painted
+  private volatile long shownAt;
+
+  private final AssetManager assets = AssetManager.getShared();
+  // image files that have finished loading (or failed); each one bumps this and asks for a repaint
+  private final AtomicInteger assetsDone = new AtomicInteger();
+  // assetsDone as of the last time the sprites were fetched
+  private int spritesFetched = -1;
 
   // grid image to show in background
   private Image bgImage;
-
-  // player image and info
-  private Image player;
-  private Point playerLoc;
-  private int playerSteps;
-  // score shown in GUI (keeps track of points from GUI-driven or console-driven actions)
-  private int guiScore = 0;
-  // number of prizes picked up
-  private int coinsCollected = 0;
-
-  // walls, prizes, traps
-  private int totalWalls;
-  private Rectangle[] walls; 
-  private Image prizeImage;
-  private int totalPrizes;
-  private Rectangle[] prizes;
-  private int totalTraps;
-  private Rectangle[] traps;
-
-  // scores, sometimes awarded as (negative) penalties
-  private int prizeVal = 10;
-  private int trapVal = 5;
-  private int endVal = 10;
-  private int offGridVal = 5; // penalty only
-  private int hitWallVal = 5;  // penalty only
-
-  // game frame
+  // reused when painting board elements
+  private final Rectangle cellRect = new Rectangle();
+
+  // rendering cache: sprites converted to the display format (player pre-scaled), sidebar fonts derived from the
+  // component font, and a background layer holding the grid, walls, and fixed sidebar text
+  private Image playerSprite;
+  private Image prizeSprite;
+  private Font baseFont;
+  private Font headerFont;
+  private Font labelFont;
+  private Font scoreFont;
+  private Font counterFont;
+  private Font legendFont;
+  private BufferedImage background;
+  // engine board version and camera the background layer was built for
+  private int backgroundVersion;
+  private int backgroundCameraX;
+  private int backgroundCameraY;
+  // board pixel shown at the top left of the viewport, as of the last paint
+  private volatile int cameraX;
+  private volatile int cameraY;
+
+  // JVM uptime in ms when the first frame was painted, and when the first frame with every image (rather than
+  // placeholders) was painted; -1 until then
+  private volatile long firstFrameMillis = -1;
+  private volatile long firstFullFrameMillis = -1;
+
+  // game frame, null when rendering without a window
   private JFrame frame;
+  // draws the window in place of Swing painting once active rendering is started, null until then
+  private volatile ActiveRenderer renderer;
   // indicates if the user requested the window to close (via key or window)
   private volatile boolean userRequestedClose = false;
-  // flag set when replay() is called so external controllers can react
-  private volatile boolean replayedFlag = false;
 
   /**
    * Constructor for the GameGUI class.
@@ -83,58 +137,58 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public GameGUI()
   {
-    
-    try {
-      bgImage = ImageIO.read(new File("grid.png"));      
-    } catch (Exception e) {
-      System.err.println("Could not open file grid.png");
-    }      
-    try {
-      prizeImage = ImageIO.read(new File("coin.png"));      
-    } catch (Exception e) {
-      System.err.println("Could not open file coin.png");
-    }
-  
-    // player image, student can customize this image by changing file on disk
-    try {
-      player = ImageIO.read(new File("player.png"));      
-    } catch (Exception e) {
-     System.err.println("Could not open file player.png");
-    }
-    // save player location
-    playerLoc = new Point(x,y);
+    this(new GameEngine());
+    openFrame();
+  }
 
-    // create the game frame
-    frame = new JFrame();
-    frame.setTitle("EscapeRoom");
-  frame.setSize(WINDOW_WIDTH, HEIGHT);
-  // don't exit JVM immediately when the window closes; allow the main loop to handle shutdown
-  frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-    frame.add(this);
-    frame.setVisible(true);
-    frame.setResizable(false); 
+  /**
+   * Creates a frame for a board of the given size. Boards that don't fit in the window scroll with the player.
+   * <P>
+   * precondition: cols and rows must be positive, non-zero integers
+   * <P>
+   * @param cols number of cells across
+   * @param rows number of cells down
+   */
+  public GameGUI(int cols, int rows)
+  {
+    this(new GameEngine(cols, rows));
+    openFrame();
+  }
 
-  // enable keyboard input for the game component
-  this.setFocusable(true);
-  this.requestFocusInWindow();
-  this.addKeyListener(this);
+  /**
+   * Create a renderer for an existing engine without opening a window. The component can be added to a
+   * container or painted into an offscreen image.
+   * <P>
+   * @param engine the game to render
+   */
+  GameGUI(GameEngine engine)
+  {
+    this.engine = engine;
+    this.view = engine.snapshot();
 
-    // handle native window close to mark that the user requested close
-    frame.addWindowListener(new java.awt.event.WindowAdapter() {
-      @Override
-      public void windowClosing(java.awt.event.WindowEvent e) {
-        userRequestedClose = true;
-      }
-      @Override
-      public void windowClosed(java.awt.event.WindowEvent e) {
-        userRequestedClose = true;
-      }
-    });
+    // images load in parallel off this thread, so the window can show a first frame right away
+    for (String name : ASSET_FILES)
+    {
+      assets.load(name).whenComplete((img, e) -> {
+        assetsDone.incrementAndGet();
+        repaint();
+      });
+    }
+  }
 
-    // set default config
-    totalWalls = 20;
-    totalPrizes = 3;
-    totalTraps = 5;
+  /**
+   * Start loading the window's images in the background before any window exists, e.g. first thing in main(),
+   * so they are ready or nearly ready by the first frame.
+   * <P>
+   * @return a future completed once every image has loaded or failed to load
+   */
+  public static CompletableFuture<Void> preloadAssets()
+  {
+    AssetManager assets = AssetManager.getShared();
+    CompletableFuture<?>[] loads = new CompletableFuture<?>[ASSET_FILES.length];
+    for (int i = 0; i < loads.length; i++)
+      loads[i] = assets.load(ASSET_FILES[i]).handle((img, e) -> null);
+    return CompletableFuture.allOf(loads);
   }
 
   @Override
@@ -143,20 +197,143 @@ public class GameGUI extends JComponent implements KeyListener
     return new java.awt.Dimension(WINDOW_WIDTH, HEIGHT);
   }
 
+  /**
+   * Route keyboard commands through a game actor. Once the actor is started, the engine belongs to its thread:
+   * register show() as an actor listener and use the actor's snapshots instead of this component's game methods.
+   * <P>
+   * @param actor the actor running this component's engine
+   */
+  public void setActor(GameActor actor)
+  {
+    this.actor = actor;
+  }
+
+  /**
+   * Time every paint, and how long each snapshot passed to show() waits until a paint that includes it finishes.
+   * <P>
+   * @param metrics where to record paint times and repaint latencies, or null to stop timing
+   */
+  public void setMetrics(GameMetrics metrics)
+  {
+    this.metrics = metrics;
+    ActiveRenderer r = renderer;
+    if (r != null)
+      r.setMetrics(metrics);
+    // the window may have painted before the metrics were set
+    if (metrics != null)
+      metrics.setStartup(firstFrameMillis, firstFullFrameMillis);
+  }
+
+  /**
+   * Return how long after the JVM started the first frame was painted, in milliseconds, or -1 if it hasn't been.
+   */
+  public long getFirstFrameMillis()
+  {
+    return firstFrameMillis;
+  }
+
+  /**
+   * Return how long after the JVM started the first frame drawn with every image rather than placeholders was
+   * painted, in milliseconds, or -1 if it hasn't been.
+   */
+  public long getFirstFullFrameMillis()
+  {
+    return firstFullFrameMillis;
+  }
+
+  /**
+   * Display a snapshot of the game, repainting only what changed since the previous snapshot.
+   * Safe to call from any thread.
+   * <P>
+   * @param snapshot the game state to show
+   */
+  public void show(GameSnapshot snapshot)
+  {
+    // snapshots shown before the next paint are all covered by it, so only the oldest one's wait is measured;
+    // the time is set before the repaint is requested, so the paint can't finish first
+    if (metrics != null && shownAt == 0
+        && (snapshot.isFullyDirty() || snapshot.getDirtyCellCount() > 0 || snapshot.getDirtyFields() != 0))
+      shownAt = System.nanoTime();
+    view = snapshot;
+    // the active renderer draws the latest view on its next frame anyway
+    if (renderer == null)
+      repaintDamage(snapshot);
+  }
+
+  /**
+   * Stop relying on Swing repaints and draw the window from an ActiveRenderer: a thread drawing whole frames at a
+   * fixed rate through a BufferStrategy, with the player sprite gliding between cells. The metrics set on this
+   * component then also get the interval between frames.
+   * <P>
+   * precondition: this component was created with a window, fps is positive, and this is not the event thread
+   * <P>
+   * @param fps most frames to draw per second, e.g. 60
+   * @return the renderer, already drawing
+   */
+  public ActiveRenderer startActiveRendering(final int fps)
+  {
+    if (frame == null)
+      throw new IllegalStateException("active rendering needs a window");
+    final ActiveRenderer r = new ActiveRenderer(this, fps);
+    r.setMetrics(metrics);
+    // swap the canvas in on the event thread, so no Swing paint of this component is still running when the
+    // render thread starts using the rendering cache
+    try {
+      SwingUtilities.invokeAndWait(() -> {
+        frame.remove(this);
+        frame.add(r);
+        frame.validate();
+        r.addKeyListener(this);
+        r.setFocusable(true);
+        r.requestFocusInWindow();
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted starting active rendering", e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalStateException("could not start active rendering", e.getCause());
+    }
+    renderer = r;
+    r.start();
+    return r;
+  }
+
+  /**
+   * Return the engine this component renders.
+   */
+  public GameEngine getEngine()
+  {
+    return engine;
+  }
+
  /**
   * After a GameGUI object is created, this method adds the walls, prizes, and traps to the gameboard.
   * Note that traps and prizes may occupy the same location.
   */
   public void createBoard()
   {
-    traps = new Rectangle[totalTraps];
-    createTraps();
-    
-    prizes = new Rectangle[totalPrizes];
-    createPrizes();
+    engine.createBoard();
+    show(engine.snapshot());
+  }
 
-    walls = new Rectangle[totalWalls];
-    createWalls();
+ /**
+  * Adds the walls, prizes, and traps to the gameboard, generated from the given seed. The same seed always
+  * produces the same board.
+  * <P>
+  * @param seed seed for the board layout
+  */
+  public void createBoard(long seed)
+  {
+    engine.createBoard(seed);
+    show(engine.snapshot());
+  }
+
+  /**
+   * Return the seed the current board was generated from.
+   */
+  public long getSeed()
+  {
+    return engine.getSeed();
   }
 
   /**
@@ -164,7 +341,7 @@ public class GameGUI extends JComponent implements KeyListener
    * This method checks for bumping into walls and going off the grid,
    * both of which result in a penalty.
    * <P>
-   * precondition: amount to move is not larger than the board, otherwise player may appear to disappear
+   * precondition: amount to move is a multiple of the grid space size
    * postcondition: increases number of steps even if the player did not actually move (e.g. bumping into a wall)
    * <P>
    * @param incrx amount to move player in x direction
@@ -173,99 +350,9 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int movePlayer(int incrx, int incry)
   {
-      int newX = x + incrx;
-      int newY = y + incry;
-      
-      // increment regardless of whether player really moves
-      playerSteps++;
-
-      // check if off grid horizontally and vertically
-      if ( (newX < 0 || newX > WIDTH-SPACE_SIZE) || (newY < 0 || newY > HEIGHT-SPACE_SIZE) )
-      {
-        System.out.println ("OFF THE GRID!");
-        return -offGridVal;
-      }
-
-      // determine if a wall is in the way
-      for (Rectangle r: walls)
-      {
-        // this rect. location
-        int startX =  (int)r.getX();
-        int endX  =  (int)r.getX() + (int)r.getWidth();
-        int startY =  (int)r.getY();
-        int endY = (int) r.getY() + (int)r.getHeight();
-
-        // (Note: the following if statements could be written as huge conditional but who wants to look at that!?)
-        // moving RIGHT, check to the right
-        if ((incrx > 0) && (x <= startX) && (startX <= newX) && (y >= startY) && (y <= endY))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          return -hitWallVal;
-        }
-        // moving LEFT, check to the left
-        else if ((incrx < 0) && (x >= startX) && (startX >= newX) && (y >= startY) && (y <= endY))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          return -hitWallVal;
-        }
-        // moving DOWN check below
-        else if ((incry > 0) && (y <= startY && startY <= newY && x >= startX && x <= endX))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          return -hitWallVal;
-        }
-        // moving UP check above
-        else if ((incry < 0) && (y >= startY) && (startY >= newY) && (x >= startX) && (x <= endX))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          return -hitWallVal;
-        }     
-      }
-
-      // all is well, move player
-      x += incrx;
-      y += incry;
-
-      // update player location immediately so checks use the current spot
-      playerLoc.setLocation(x,y);
-
-      // after moving, automatically activate traps (if any) at the new location
-      int delta = 0;
-      boolean trapFound = false;
-      if (traps != null)
-      {
-        for (Rectangle t: traps)
-        {
-          if (t != null && t.getWidth() > 0 && t.contains(x, y))
-          {
-            t.setSize(0,0);
-            System.out.println("TRAP IS SPRUNG!");
-            delta += trapVal;
-            trapFound = true;
-            // do not break; multiple traps could be present but generally one
-          }
-        }
-      }
-
-      // if no trap hid the prize, auto-pickup any prize at this location (no penalty when none)
-      if (!trapFound && prizes != null)
-      {
-        for (Rectangle p: prizes)
-        {
-          if (p != null && p.getWidth() > 0 && p.contains(x, y))
-          {
-            p.setSize(0,0);
-            coinsCollected++;
-            System.out.println("YOU PICKED UP A PRIZE!");
-            delta += prizeVal;
-            // break so multiple prizes at same tile aren't double-counted
-            break;
-          }
-        }
-      }
-
-      repaint();   
-      return delta;   
+    int delta = engine.movePlayer(incrx, incry);
+    show(engine.snapshot());
+    return delta;
   }
 
   /**
@@ -273,8 +360,8 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public void addToScore(int delta)
   {
-    guiScore += delta;
-    repaint();
+    engine.addToScore(delta);
+    show(engine.snapshot());
   }
 
   /**
@@ -293,8 +380,10 @@ public class GameGUI extends JComponent implements KeyListener
   public void closeWindow()
   {
     userRequestedClose = true;
+    stopRenderer();
     setVisible(false);
-    frame.dispose();
+    if (frame != null)
+      frame.dispose();
   }
 
   /**
@@ -310,31 +399,35 @@ public class GameGUI extends JComponent implements KeyListener
   public void keyPressed(KeyEvent e)
   {
     // arrow keys: single-step moves; with shift pressed -> jump (2 cells)
-    int dx = 0;
-    int dy = 0;
-    int multiplier = e.isShiftDown() ? 2 : 1;
+    boolean jump = e.isShiftDown();
+    Command c;
 
     switch (e.getKeyCode())
     {
       case KeyEvent.VK_RIGHT:
-        dx = multiplier * SPACE_SIZE;
+        c = jump ? Command.JUMP_RIGHT : Command.RIGHT;
         break;
       case KeyEvent.VK_LEFT:
-        dx = -multiplier * SPACE_SIZE;
+        c = jump ? Command.JUMP_LEFT : Command.LEFT;
         break;
       case KeyEvent.VK_UP:
-        dy = -multiplier * SPACE_SIZE;
+        c = jump ? Command.JUMP_UP : Command.UP;
         break;
       case KeyEvent.VK_DOWN:
-        dy = multiplier * SPACE_SIZE;
+        c = jump ? Command.JUMP_DOWN : Command.DOWN;
         break;
       case KeyEvent.VK_P:
-        int deltaP = pickupPrize();
-        addToScore(deltaP);
-        return;
+        c = Command.PICKUP;
+        break;
       case KeyEvent.VK_R:
-        replay();
-        return;
+        c = Command.REPLAY;
+        break;
+      case KeyEvent.VK_Z:
+        c = Command.UNDO;
+        break;
+      case KeyEvent.VK_Y:
+        c = Command.REDO;
+        break;
       case KeyEvent.VK_Q:
         closeWindow();
         return;
@@ -342,9 +435,20 @@ public class GameGUI extends JComponent implements KeyListener
         return;
     }
 
-    // perform move and add any penalty/bonus to GUI score
-    int delta = movePlayer(dx, dy);
-    addToScore(delta);
+    // perform the command and add any penalty/bonus to the score
+    if (actor != null)
+    {
+      actor.submit(c);
+    }
+    else
+    {
+      GameMetrics m = metrics;
+      long start = m != null ? System.nanoTime() : 0;
+      c.apply(engine);
+      if (m != null)
+        m.recordCommand(System.nanoTime() - start);
+      show(engine.snapshot());
+    }
   }
 
   @Override
@@ -354,7 +458,7 @@ public class GameGUI extends JComponent implements KeyListener
   public void keyTyped(KeyEvent e) { }
 
   /**
-   * Check the space adjacent to the player for a trap. The adjacent location is one space away from the player, 
+   * Check the space adjacent to the player for a trap. The adjacent location is one space away from the player,
    * designated by newx, newy.
    * <P>
    * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go undetected
@@ -365,26 +469,7 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public boolean isTrap(int newx, int newy)
   {
-    double px = playerLoc.getX() + newx;
-    double py = playerLoc.getY() + newy;
-
-
-    for (Rectangle r: traps)
-    {
-      // DEBUG: System.out.println("trapx:" + r.getX() + " trapy:" + r.getY() + "\npx: " + px + " py:" + py);
-      // zero size traps have already been sprung, ignore
-      if (r.getWidth() > 0)
-      {
-        // if new location of player has a trap, return true
-        if (r.contains(px, py))
-        {
-          System.out.println("A TRAP IS AHEAD");
-          return true;
-        }
-      }
-    }
-    // there is no trap where player wants to go
-    return false;
+    return engine.isTrap(newx, newy);
   }
 
   /**
@@ -399,27 +484,9 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int springTrap(int newx, int newy)
   {
-    double px = playerLoc.getX() + newx;
-    double py = playerLoc.getY() + newy;
-
-    // check all traps, some of which may be already sprung
-    for (Rectangle r: traps)
-    {
-      // DEBUG: System.out.println("trapx:" + r.getX() + " trapy:" + r.getY() + "\npx: " + px + " py:" + py);
-      if (r.contains(px, py))
-      {
-        // zero size traps indicate it has been sprung, cannot spring again, so ignore
-        if (r.getWidth() > 0)
-        {
-          r.setSize(0,0);
-          System.out.println("TRAP IS SPRUNG!");
-          return trapVal;
-        }
-      }
-    }
-    // no trap here, penalty
-    System.out.println("THERE IS NO TRAP HERE TO SPRING");
-    return -trapVal;
+    int delta = engine.springTrap(newx, newy);
+    show(engine.snapshot());
+    return delta;
   }
 
   /**
@@ -429,25 +496,9 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int pickupPrize()
   {
-    double px = playerLoc.getX();
-    double py = playerLoc.getY();
-
-    for (Rectangle p: prizes)
-    {
-      // DEBUG: System.out.println("prizex:" + p.getX() + " prizey:" + p.getY() + "\npx: " + px + " py:" + py);
-      // if location has a prize, pick it up
-      if (p.getWidth() > 0 && p.contains(px, py))
-      {
-        System.out.println("YOU PICKED UP A PRIZE!");
-        p.setSize(0,0);
-        // increment coin counter shown in GUI
-        coinsCollected++;
-        repaint();
-        return prizeVal;
-      }
-    }
-    System.out.println("OOPS, NO PRIZE HERE");
-    return -prizeVal;  
+    int delta = engine.pickupPrize();
+    show(engine.snapshot());
+    return delta;
   }
 
   /**
@@ -455,7 +506,7 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int getCoinsCollected()
   {
-    return coinsCollected;
+    return engine.getCoinsCollected();
   }
 
   /**
@@ -465,36 +516,24 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int getSteps()
   {
-    return playerSteps;
+    return engine.getSteps();
   }
 
   public int getRemainingPrizes()
   {
-    int c = 0;
-    if (prizes == null) return 0;
-    for (Rectangle p: prizes)
-      if (p != null && p.getWidth() > 0 && p.getHeight() > 0) c++;
-    return c;
+    return engine.getRemainingPrizes();
   }
 
   public int getRemainingTraps()
   {
-    int c = 0;
-    if (traps == null) return 0;
-    for (Rectangle t: traps)
-      if (t != null && t.getWidth() > 0 && t.getHeight() > 0) c++;
-    return c;
+    return engine.getRemainingTraps();
   }
 
   public int getRemainingWalls()
   {
-    int c = 0;
-    if (walls == null) return 0;
-    for (Rectangle w: walls)
-      if (w != null && w.getWidth() > 0 && w.getHeight() > 0) c++;
-    return c;
+    return engine.getRemainingWalls();
   }
-  
+
   /**
    * Set the designated number of prizes in the game.  This can be used to customize the gameboard configuration.
    * <P>
@@ -502,11 +541,11 @@ public class GameGUI extends JComponent implements KeyListener
    * <P>
    * @param p number of prizes to create
    */
-  public void setPrizes(int p) 
+  public void setPrizes(int p)
   {
-    totalPrizes = p;
+    engine.setPrizes(p);
   }
-  
+
   /**
    * Set the designated number of traps in the game. This can be used to customize the gameboard configuration.
    * <P>
@@ -514,11 +553,21 @@ public class GameGUI extends JComponent implements KeyListener
    * <P>
    * @param t number of traps to create
    */
-  public void setTraps(int t) 
+  public void setTraps(int t)
   {
-    totalTraps = t;
+    engine.setTraps(t);
   }
-  
+
+  /**
+   * Choose whether generated boards are guaranteed to be solvable.
+   * <P>
+   * @param s true to generate only boards where the far right wall and every prize can be reached
+   */
+  public void setSolvable(boolean s)
+  {
+    engine.setSolvable(s);
+  }
+
   /**
    * Set the designated number of walls in the game. This can be used to customize the gameboard configuration.
    * <P>
@@ -526,9 +575,9 @@ public class GameGUI extends JComponent implements KeyListener
    * <P>
    * @param w number of walls to create
    */
-  public void setWalls(int w) 
+  public void setWalls(int w)
   {
-    totalWalls = w;
+    engine.setWalls(w);
   }
 
   /**
@@ -539,24 +588,8 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public int replay()
   {
-
-    int win = playerAtEnd();
-  
-    // resize prizes and traps to "reactivate" them
-    for (Rectangle p: prizes)
-      p.setSize(SPACE_SIZE/3, SPACE_SIZE/3);
-    for (Rectangle t: traps)
-      t.setSize(SPACE_SIZE/3, SPACE_SIZE/3);
-
-    // move player to start of board
-    x = START_LOC_X;
-    y = START_LOC_Y;
-    playerSteps = 0;
-    // reset GUI-visible score and coins when replaying
-    guiScore = 0;
-    coinsCollected = 0;
-    replayedFlag = true;
-    repaint();
+    int win = engine.replay();
+    show(engine.snapshot());
     return win;
   }
 
@@ -566,9 +599,7 @@ public class GameGUI extends JComponent implements KeyListener
    */
   public boolean consumeReplayedFlag()
   {
-    boolean v = replayedFlag;
-    replayedFlag = false;
-    return v;
+    return engine.consumeReplayedFlag();
   }
 
  /**
@@ -576,193 +607,465 @@ public class GameGUI extends JComponent implements KeyListener
   * <P>
   * @return positive score for reaching the far right wall, penalty otherwise
   */
-  public int endGame() 
+  public int endGame()
   {
-    int win = playerAtEnd();
-  
+    int win = engine.endGame();
+
+    stopRenderer();
     setVisible(false);
-    frame.dispose();
+    if (frame != null)
+      frame.dispose();
     return win;
   }
 
   /*------------------- public methods not to be called as part of API -------------------*/
 
-  /** 
+  /**
    * For internal use and should not be called directly: Users graphics buffer to paint board elements.
    */
   public void paintComponent(Graphics g) {
+    long start = metrics != null ? System.nanoTime() : 0;
     super.paintComponent(g);
-    Graphics2D g2 = (Graphics2D)g;
+    GameSnapshot v = view;
+    drawFrame((Graphics2D)g, v, v.getPlayerX(), v.getPlayerY());
+    finishFrame(start);
+  }
 
-    // draw grid
-    g.drawImage(bgImage, 0, 0, null);
-    // draw sidebar background (slightly darker for contrast)
-    g2.setPaint(new Color(0xE8E8E8));
-    g2.fillRect(WIDTH, 0, SIDEBAR_WIDTH, HEIGHT);
-    g2.setPaint(Color.DARK_GRAY);
-    g2.drawRect(WIDTH, 0, SIDEBAR_WIDTH-1, HEIGHT-1);
+  /*------------------- package methods for ActiveRenderer -------------------*/
 
-    // add (invisible) traps
-    for (Rectangle t : traps)
-    {
-      // some entries may be null if board wasn't fully initialized; guard against that
-      if (t != null && t.getWidth() > 0 && t.getHeight() > 0)
-      {
-        g2.setPaint(Color.WHITE); 
-        g2.fill(t);
-      }
-    }
+  /**
+   * The latest snapshot passed to show()
+   */
+  GameSnapshot getView()
+  {
+    return view;
+  }
 
-    // add prizes
-    for (Rectangle p : prizes)
+  /**
+   * Draw a whole frame of a snapshot, with the player sprite at the given board pixel rather than necessarily its
+   * cell, and the viewport centered on the sprite
+   */
+  void drawFrame(Graphics2D g2, GameSnapshot v, int playerX, int playerY)
+  {
+    Board board = v.getBoard();
+    int camX = cameraX(board, playerX);
+    int camY = cameraY(board, playerY);
+    cameraX = camX;
+    cameraY = camY;
+    prepareCache(g2, v, camX, camY);
+
+    // grid, sidebar background, walls and fixed sidebar text
+    g2.drawImage(background, 0, 0, null);
+
+    // board elements are drawn in board coordinates, clipped to the viewport
+    Graphics2D map = (Graphics2D)g2.create(0, 0, WIDTH, HEIGHT);
+    map.translate(-camX, -camY);
+    int col0 = firstVisible(camX);
+    int col1 = lastVisible(camX, WIDTH, board.getCols());
+    int row0 = firstVisible(camY);
+    int row1 = lastVisible(camY, HEIGHT, board.getRows());
+
+    // add (invisible) traps; sprung traps are cleared from the board so aren't rendered
+    map.setPaint(Color.WHITE);
+    for (int row = row0; row <= row1; row++)
     {
-      // picked up prizes are 0 size so don't render
-      if (p != null && p.getWidth() > 0 && p.getHeight() > 0) 
-      {
-        int px = (int)p.getX();
-        int py = (int)p.getY();
-        g.drawImage(prizeImage, px, py, null);
-      }
+      int end = board.cell(col1, row);
+      for (int c = board.nextTrap(board.cell(col0, row)); c >= 0 && c <= end; c = board.nextTrap(c + 1))
+        map.fill(markerRect(board, c));
     }
 
-    // add walls
-    for (Rectangle r : walls) 
+    // add prizes; picked up prizes are cleared from the board so aren't rendered
+    for (int row = row0; row <= row1; row++)
     {
-      if (r != null && r.getWidth() > 0 && r.getHeight() > 0)
+      int end = board.cell(col1, row);
+      for (int c = board.nextPrize(board.cell(col0, row)); c >= 0 && c <= end; c = board.nextPrize(c + 1))
       {
-        g2.setPaint(Color.BLACK);
-        g2.fill(r);
+        Rectangle p = markerRect(board, c);
+        map.drawImage(prizeSprite, p.x, p.y, null);
       }
     }
-   
-    // draw player, saving its location
-    g.drawImage(player, x, y, 40,40, null);
-    playerLoc.setLocation(x,y);
 
-  // draw sidebar header
-  g2.setPaint(Color.BLACK);
-  g2.setFont(g2.getFont().deriveFont(16f).deriveFont(java.awt.Font.BOLD));
-  g2.drawString("EscapeRoom", WIDTH + 12, 26);
+    // draw player
+    map.drawImage(playerSprite, playerX, playerY, null);
+    map.dispose();
 
   // big score display
-  g2.setFont(g2.getFont().deriveFont(14f));
-  g2.setPaint(new Color(0x1A73E8)); // blue score
-  g2.drawString("Score:", WIDTH + 12, 56);
-  g2.setFont(g2.getFont().deriveFont(18f).deriveFont(java.awt.Font.BOLD));
-  g2.drawString(Integer.toString(guiScore), WIDTH + 12, 80);
+  g2.setPaint(SCORE_COLOR);
+  g2.setFont(scoreFont);
+  g2.drawString(Integer.toString(v.getScore()), WIDTH + 12, 80);
 
   // small counters
-  g2.setFont(g2.getFont().deriveFont(12f).deriveFont(java.awt.Font.PLAIN));
+  g2.setFont(counterFont);
   g2.setPaint(Color.BLACK);
-  g2.drawString("Steps: " + playerSteps, WIDTH + 12, 105);
-  g2.drawString("Coins: " + coinsCollected, WIDTH + 12, 125);
+  g2.drawString("Steps: " + v.getSteps(), WIDTH + 12, 105);
+  g2.drawString("Coins: " + v.getCoinsCollected(), WIDTH + 12, 125);
 
   // remaining items
-  int remPrizes = getRemainingPrizes();
-  int remTraps = getRemainingTraps();
-  int remWalls = getRemainingWalls();
+  int remPrizes = v.getRemainingPrizes();
+  int remTraps = v.getRemainingTraps();
+  int remWalls = v.getRemainingWalls();
   g2.drawString("Prizes left: " + remPrizes, WIDTH + 12, 150);
   g2.drawString("Traps left: " + remTraps, WIDTH + 12, 170);
   g2.drawString("Walls: " + remWalls, WIDTH + 12, 190);
+  }
 
-  // controls and legend (smaller, muted)
-  g2.setPaint(Color.DARK_GRAY);
-  g2.setFont(g2.getFont().deriveFont(11f));
-  g2.drawString("Controls:", WIDTH + 12, 215);
-  g2.drawString("Arrow: move  Shift+Arrow: jump", WIDTH + 12, 235);
-  g2.drawString("P: pickup  R: replay  Q: quit", WIDTH + 12, 250);
-  g2.drawString("Prize:+" + prizeVal + "  Trap:+" + trapVal, WIDTH + 12, 270);
-  g2.drawString("Wall:-" + hitWallVal + "  Off-grid:-" + offGridVal, WIDTH + 12, 285);
+  /**
+   * Record a frame that has been drawn and shown: its paint time when start (from System.nanoTime()) is non-zero,
+   * the snapshots it showed, and the startup times
+   */
+  void finishFrame(long start)
+  {
+    GameMetrics m = metrics;
+    // the sprites drawn in the frame were fetched once every image had arrived
+    if (firstFullFrameMillis < 0)
+      recordStartup(m, spritesFetched == ASSET_FILES.length);
+    if (m != null && start != 0)
+      recordPaint(m, start);
   }
 
   /*------------------- private methods -------------------*/
 
   /*
-   * Add randomly placed prizes to be picked up.
-   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   * Note when the first frame, and the first frame with all the images, were painted
    */
-  private void createPrizes()
+  private void recordStartup(GameMetrics m, boolean full)
   {
-    int s = SPACE_SIZE; 
-    Random rand = new Random();
-     for (int numPrizes = 0; numPrizes < totalPrizes; numPrizes++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
+    long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+    if (firstFrameMillis < 0)
+      firstFrameMillis = uptime;
+    if (full)
+      firstFullFrameMillis = uptime;
+    if (m != null)
+      m.setStartup(firstFrameMillis, firstFullFrameMillis);
+  }
+
+  /*
+   * Record a finished paint, and the wait of the snapshots it showed. Only a snapshot shown before the paint
+   * started is sure to be in it; one shown since waits for the next paint.
+   */
+  private void recordPaint(GameMetrics m, long start)
+  {
+    long end = System.nanoTime();
+    m.recordPaint(end - start);
+    long shown = shownAt;
+    if (shown != 0 && shown <= start)
+    {
+      shownAt = 0;
+      m.recordRepaint(end - shown);
+    }
+  }
 
-      Rectangle r;
-      r = new Rectangle((w*s + 15),(h*s + 15), 15, 15);
-      prizes[numPrizes] = r;
-     }
+  /*
+   * Stop the active renderer, if there is one, before the window goes away under it
+   */
+  private void stopRenderer()
+  {
+    ActiveRenderer r = renderer;
+    if (r != null)
+      r.stop();
   }
 
   /*
-   * Add randomly placed traps to the board. They will be painted white and appear invisible.
-   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   * Create the game frame showing this component and hook up keyboard and window events.
    */
-  private void createTraps()
+  private void openFrame()
   {
-    int s = SPACE_SIZE; 
-    Random rand = new Random();
-     for (int numTraps = 0; numTraps < totalTraps; numTraps++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
+    // create the game frame
+    frame = new JFrame();
+    frame.setTitle("EscapeRoom");
+  frame.setSize(WINDOW_WIDTH, HEIGHT);
+  // don't exit JVM immediately when the window closes; allow the main loop to handle shutdown
+  frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    frame.add(this);
+    frame.setVisible(true);
+    frame.setResizable(false);
 
-      Rectangle r;
-      r = new Rectangle((w*s + 15),(h*s + 15), 15, 15);
-      traps[numTraps] = r;
-     }
+  // enable keyboard input for the game component
+  this.setFocusable(true);
+  this.requestFocusInWindow();
+  this.addKeyListener(this);
+
+    // handle native window close to mark that the user requested close
+    frame.addWindowListener(new java.awt.event.WindowAdapter() {
+      @Override
+      public void windowClosing(java.awt.event.WindowEvent e) {
+        userRequestedClose = true;
+        stopRenderer();
+      }
+      @Override
+      public void windowClosed(java.awt.event.WindowEvent e) {
+        userRequestedClose = true;
+      }
+    });
+  }
+
+  /*
+   * Repaint only what the engine reported as changed: the cells that changed and the sidebar counters that changed.
+   * Swing coalesces the requested regions into the next paint. When the viewport has to scroll the whole map is
+   * repainted.
+   */
+  private void repaintDamage(GameSnapshot s)
+  {
+    int camX = cameraX(s.getBoard(), s.getPlayerX());
+    int camY = cameraY(s.getBoard(), s.getPlayerY());
+    if (s.isFullyDirty() || camX != cameraX || camY != cameraY)
+    {
+      repaint();
+      return;
+    }
+    Board board = s.getBoard();
+    for (int i = 0; i < s.getDirtyCellCount(); i++)
+    {
+      int c = s.getDirtyCell(i);
+      repaint(board.colOf(c) * SPACE_SIZE - camX, board.rowOf(c) * SPACE_SIZE - camY, SPACE_SIZE, SPACE_SIZE);
+    }
+    int fields = s.getDirtyFields();
+    for (int[] f : SIDEBAR_FIELDS)
+    {
+      if ((fields & f[0]) != 0)
+        repaint(WIDTH + 1, f[1], SIDEBAR_WIDTH - 2, f[2] - f[1]);
+    }
   }
 
   /*
-   * Add walls to the board in random locations 
+   * Build whatever part of the rendering cache is missing or stale. Sprites and fonts are built on the first paint
+   * (fonts again if the component font changes); the background layer is rebuilt when the engine reports a new or
+   * reset board, or the viewport scrolls.
    */
-  private void createWalls()
+  private void prepareCache(Graphics2D g2, GameSnapshot v, int camX, int camY)
   {
-     int s = SPACE_SIZE; 
+    // images already converted to the display format (player pre-scaled) by the asset manager, or placeholders
+    // until they load; the count is read first, so an image arriving meanwhile is fetched on the next paint
+    int done = assetsDone.get();
+    if (done != spritesFetched)
+    {
+      spritesFetched = done;
+      bgImage = assets.get(GRID_FILE, GRID_IMAGE_W, GRID_IMAGE_H, GameGUI::paintGridPlaceholder);
+      prizeSprite = assets.get(PRIZE_FILE, PRIZE_SIZE, PRIZE_SIZE, GameGUI::paintPrizePlaceholder);
+      playerSprite = assets.getScaled(PLAYER_FILE, PLAYER_SIZE, PLAYER_SIZE, GameGUI::paintPlayerPlaceholder);
+      background = null;
+    }
 
-     Random rand = new Random();
-     for (int numWalls = 0; numWalls < totalWalls; numWalls++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
+    // the graphics font is only used when the component has none of its own (e.g. painting offscreen)
+    Font font = getFont();
+    if (baseFont == null || (font != null && font != baseFont))
+    {
+      if (font == null)
+        font = g2.getFont();
+      // same derivation chain the sidebar has always used
+      baseFont = font;
+      headerFont = font.deriveFont(16f).deriveFont(Font.BOLD);
+      labelFont = headerFont.deriveFont(14f);
+      scoreFont = labelFont.deriveFont(18f).deriveFont(Font.BOLD);
+      counterFont = scoreFont.deriveFont(12f).deriveFont(Font.PLAIN);
+      legendFont = counterFont.deriveFont(11f);
+      background = null;
+    }
 
-      Rectangle r;
-       if (rand.nextInt(2) == 0) 
-       {
-         // vertical wall
-         r = new Rectangle((w*s + s - 5),h*s, 8,s);
-       }
-       else
-       {
-         /// horizontal
-         r = new Rectangle(w*s,(h*s + s - 5), s, 8);
-       }
-       walls[numWalls] = r;
-     }
+    if (background == null || backgroundVersion != v.getBoardVersion()
+        || backgroundCameraX != camX || backgroundCameraY != camY)
+    {
+      buildBackground(v.getBoard(), camX, camY);
+      backgroundVersion = v.getBoardVersion();
+      backgroundCameraX = camX;
+      backgroundCameraY = camY;
+    }
   }
 
-  /**
-   * Checks if player as at the far right of the board 
-   * @return positive score for reaching the far right wall, penalty otherwise
+  /*
+   * Composite the parts of the window that only change with the board into one opaque image, so each frame
+   * starts with a straight copy.
    */
-  private int playerAtEnd() 
+  private void buildBackground(Board board, int camX, int camY)
   {
-    int score;
+    if (background == null)
+      background = createImage(WINDOW_WIDTH, HEIGHT, Transparency.OPAQUE);
+
+    Graphics2D g2 = background.createGraphics();
+    // areas the grid image doesn't cover show the window background
+    Color bg = getBackground();
+    g2.setPaint(bg != null ? bg : javax.swing.UIManager.getColor("Panel.background"));
+    g2.fillRect(0, 0, WINDOW_WIDTH, HEIGHT);
+
+    // draw grid and walls, in board coordinates clipped to the viewport
+    Graphics2D map = (Graphics2D)g2.create(0, 0, WIDTH, HEIGHT);
+    map.translate(-camX, -camY);
+    int col0 = firstVisible(camX);
+    int col1 = lastVisible(camX, WIDTH, board.getCols());
+    int row0 = firstVisible(camY);
+    int row1 = lastVisible(camY, HEIGHT, board.getRows());
+    drawGrid(map, board, col0, col1, row0, row1);
+
+    map.setPaint(Color.BLACK);
+    for (int row = row0; row <= row1; row++)
+    {
+      int end = board.cell(col1, row);
+      for (int c = board.nextVerticalWall(board.cell(col0, row)); c >= 0 && c <= end; c = board.nextVerticalWall(c + 1))
+        map.fill(verticalWallRect(board, c));
+      for (int c = board.nextHorizontalWall(board.cell(col0, row)); c >= 0 && c <= end;
+           c = board.nextHorizontalWall(c + 1))
+        map.fill(horizontalWallRect(board, c));
+    }
+    map.dispose();
+
+    // draw sidebar background (slightly darker for contrast)
+    g2.setPaint(SIDEBAR_COLOR);
+    g2.fillRect(WIDTH, 0, SIDEBAR_WIDTH, HEIGHT);
+    g2.setPaint(Color.DARK_GRAY);
+    g2.drawRect(WIDTH, 0, SIDEBAR_WIDTH-1, HEIGHT-1);
+
+    // draw sidebar header
+    g2.setPaint(Color.BLACK);
+    g2.setFont(headerFont);
+    g2.drawString("EscapeRoom", WIDTH + 12, 26);
+    g2.setFont(labelFont);
+    g2.setPaint(SCORE_COLOR);
+    g2.drawString("Score:", WIDTH + 12, 56);
 
-    double px = playerLoc.getX();
-    if (px > (WIDTH - 2*SPACE_SIZE))
+    // controls and legend (smaller, muted)
+    g2.setPaint(Color.DARK_GRAY);
+    g2.setFont(legendFont);
+    g2.drawString("Controls:", WIDTH + 12, 215);
+    g2.drawString("Arrow: move  Shift+Arrow: jump", WIDTH + 12, 235);
+    g2.drawString("P: pickup  R: replay  Q: quit", WIDTH + 12, 250);
+    g2.drawString("Z: undo  Y: redo", WIDTH + 12, 265);
+    g2.drawString("Prize:+" + engine.getPrizeVal() + "  Trap:+" + engine.getTrapVal(), WIDTH + 12, 285);
+    g2.drawString("Wall:-" + engine.getHitWallVal() + "  Off-grid:-" + engine.getOffGridVal(), WIDTH + 12, 300);
+    g2.dispose();
+  }
+
+  /*
+   * Draw the grid under the given range of cells. The grid image covers the default board, so it is drawn as it is
+   * when the board fits in it; larger boards are tiled from its cells, using the image's last row and column for
+   * the last row and column of the board so the border lines still close the grid.
+   */
+  private void drawGrid(Graphics2D g2, Board board, int col0, int col1, int row0, int row1)
+  {
+    if (bgImage == null)
+      return;
+    int imgCols = bgImage.getWidth(null) / SPACE_SIZE;
+    int imgRows = bgImage.getHeight(null) / SPACE_SIZE;
+    if (board.getCols() <= imgCols && board.getRows() <= imgRows)
     {
-      System.out.println("YOU MADE IT!");
-      score = endVal;
+      g2.drawImage(bgImage, 0, 0, null);
+      return;
     }
-    else
+    for (int row = row0; row <= row1; row++)
     {
-      System.out.println("OOPS, YOU QUIT TOO SOON!");
-      score = -endVal;
+      boolean lastRow = row == board.getRows() - 1;
+      int sy = (lastRow ? imgRows - 1 : row % (imgRows - 1)) * SPACE_SIZE;
+      int h = lastRow ? bgImage.getHeight(null) - sy : SPACE_SIZE;
+      for (int col = col0; col <= col1; col++)
+      {
+        boolean lastCol = col == board.getCols() - 1;
+        int sx = (lastCol ? imgCols - 1 : col % (imgCols - 1)) * SPACE_SIZE;
+        int w = lastCol ? bgImage.getWidth(null) - sx : SPACE_SIZE;
+        int x = col * SPACE_SIZE;
+        int y = row * SPACE_SIZE;
+        g2.drawImage(bgImage, x, y, x + w, y + h, sx, sy, sx + w, sy + h, null);
+      }
     }
-    return score;
-  
   }
-}
\ No newline at end of file
+
+  /*
+   * Left (top) edge of the viewport in board pixels for the player sprite at playerX (playerY): centered on the
+   * sprite, but never past the edges of the board. Boards that fit in the viewport don't scroll.
+   */
+  private static int cameraX(Board board, int playerX)
+  {
+    return camera(playerX + PLAYER_SIZE / 2, board.getCols() * SPACE_SIZE + GRID_MARGIN, WIDTH);
+  }
+
+  private static int cameraY(Board board, int playerY)
+  {
+    return camera(playerY + PLAYER_SIZE / 2, board.getRows() * SPACE_SIZE + GRID_MARGIN, HEIGHT);
+  }
+
+  private static int camera(int center, int boardSize, int viewSize)
+  {
+    if (boardSize <= viewSize)
+      return 0;
+    return Math.max(0, Math.min(boardSize - viewSize, center - viewSize / 2));
+  }
+
+  /*
+   * First and last cell (column or row) with anything inside a viewport edge at pos. Walls reach a few pixels into
+   * the next cell, so the cell before the edge is included.
+   */
+  private static int firstVisible(int pos)
+  {
+    return Math.max(0, pos / SPACE_SIZE - 1);
+  }
+
+  private static int lastVisible(int pos, int viewSize, int cells)
+  {
+    return Math.min(cells - 1, (pos + viewSize) / SPACE_SIZE);
+  }
+
+  /*
+   * Create an image in the format of the screen showing this component, so blits can be accelerated.
+   * Falls back to a plain image when rendering offscreen or headless.
+   */
+  private BufferedImage createImage(int w, int h, int transparency)
+  {
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    if (gc != null)
+      return gc.createCompatibleImage(w, h, transparency);
+    return new BufferedImage(w, h, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB
+                                                                       : BufferedImage.TYPE_INT_ARGB_PRE);
+  }
+
+  /*
+   * Placeholders drawn until (or if) the image files load: grid lines on each cell edge, a gold coin, and a blue
+   * player token
+   */
+  private static void paintGridPlaceholder(Graphics2D g, int w, int h)
+  {
+    g.setPaint(Color.WHITE);
+    g.fillRect(0, 0, w, h);
+    g.setPaint(Color.LIGHT_GRAY);
+    for (int x = 0; x < w; x += SPACE_SIZE)
+      g.drawLine(x, 0, x, h - 1);
+    for (int y = 0; y < h; y += SPACE_SIZE)
+      g.drawLine(0, y, w - 1, y);
+  }
+
+  private static void paintPrizePlaceholder(Graphics2D g, int w, int h)
+  {
+    g.setPaint(new Color(0xF2C230));
+    g.fillOval(1, 1, w - 2, h - 2);
+    g.setPaint(new Color(0xB8860B));
+    g.drawOval(1, 1, w - 3, h - 3);
+  }
+
+  private static void paintPlayerPlaceholder(Graphics2D g, int w, int h)
+  {
+    g.setPaint(SCORE_COLOR);
+    g.fillOval(2, 2, w - 4, h - 4);
+    g.setPaint(Color.WHITE);
+    g.fillOval(w / 2 - w / 8, h / 4, w / 4, h / 4);
+  }
+
+  /*
+   * Rectangle views of board elements, as they were placed by the original createTraps/createPrizes/createWalls.
+   * The same Rectangle is reused, so callers must not keep the result.
+   */
+  private Rectangle markerRect(Board board, int cell)
+  {
+    cellRect.setBounds(board.colOf(cell)*SPACE_SIZE + START_LOC_X, board.rowOf(cell)*SPACE_SIZE + START_LOC_Y,
+                       MARKER_SIZE, MARKER_SIZE);
+    return cellRect;
+  }
+
+  private Rectangle verticalWallRect(Board board, int cell)
+  {
+    cellRect.setBounds(board.colOf(cell)*SPACE_SIZE + SPACE_SIZE - 5, board.rowOf(cell)*SPACE_SIZE, 8, SPACE_SIZE);
+    return cellRect;
+  }
+
+  private Rectangle horizontalWallRect(Board board, int cell)
+  {
+    cellRect.setBounds(board.colOf(cell)*SPACE_SIZE, board.rowOf(cell)*SPACE_SIZE + SPACE_SIZE - 5, SPACE_SIZE, 8);
+    return cellRect;
+  }
+}
@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * A game session kept as a log of the commands applied, from which the state at any point can be rebuilt.
+ * <P>
+ * Entry i of the log is the i-th command applied and the score change it caused; position n is the state after the
+ * first n entries, so position 0 is the state the history started from. The engine's rules are the fold: the state
+ * at a position is the nearest earlier snapshot with the commands after it applied again. A snapshot (an O(1)
+ * GameState) is kept every interval entries, so rebuilding any position, however long the session, costs one
+ * restore and fewer than interval commands. UNDO and REDO depend on the engine's undo stack rather than on the
+ * state alone, so the entries they make always get a snapshot and are never applied again.
+ * <P>
+ * Rebuilding runs on a private copy of the engine, with no listeners or metrics, so stateAt() leaves the engine
+ * untouched: no events, no repaint, no replayed commands counted. seek() moves the engine itself to an earlier
+ * position by restoring the rebuilt state, dropping the entries after it, so the next command starts a new branch
+ * there; this is unbounded undo for sessions of any length.
+ * <P>
+ * A GameHistory is used on the thread that runs its engine.
+ *
+ * @version 1.0
+ */
+public class GameHistory
+{
+  /** Entries between snapshots when none is given. */
+  public static final int DEFAULT_INTERVAL = 64;
+
+  private final GameEngine engine;
+  private final int interval;
+
+  // the log, struct-of-arrays; snapshots[n] is the state at position n, or null if it has to be rebuilt
+  private Command[] commands = new Command[256];
+  private int[] deltas = new int[256];
+  private GameState[] snapshots = new GameState[257];
+  private int size;
+
+  /**
+   * Start a history at the engine's current state, with a snapshot every DEFAULT_INTERVAL entries.
+   * <P>
+   * @param engine the game to record
+   */
+  public GameHistory(GameEngine engine)
+  {
+    this(engine, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Start a history at the engine's current state.
+   * <P>
+   * precondition: interval is positive
+   * <P>
+   * @param engine the game to record
+   * @param interval entries between snapshots; smaller rebuilds faster and keeps more states
+   */
+  public GameHistory(GameEngine engine, int interval)
+  {
+    if (interval < 1)
+      throw new IllegalArgumentException("snapshot interval must be positive: " + interval);
+    this.engine = engine;
+    this.interval = interval;
+    snapshots[0] = engine.saveState();
+  }
+
+  /**
+   * Apply a command to the engine and append it to the log.
+   * <P>
+   * @param command the command to apply
+   * @return the score change
+   */
+  public int apply(Command command)
+  {
+    int delta = command.apply(engine);
+    record(command, delta);
+    return delta;
+  }
+
+  /**
+   * Append a command that was just applied to the engine some other way, for example by a GameActor.
+   * <P>
+   * @param command the command applied
+   * @param delta the score change it caused
+   */
+  public void record(Command command, int delta)
+  {
+    if (size == commands.length)
+    {
+      commands = Arrays.copyOf(commands, size * 2);
+      deltas = Arrays.copyOf(deltas, size * 2);
+      snapshots = Arrays.copyOf(snapshots, size * 2 + 1);
+    }
+    commands[size] = command;
+    deltas[size] = delta;
+    size++;
+    if (size % interval == 0 || command == Command.UNDO || command == Command.REDO)
+      snapshots[size] = engine.saveState();
+  }
+
+  /**
+   * Return the number of entries in the log; the current position.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  public Command getCommand(int entry)
+  {
+    checkEntry(entry);
+    return commands[entry];
+  }
+
+  /**
+   * Return the score change recorded for an entry.
+   */
+  public int getDelta(int entry)
+  {
+    checkEntry(entry);
+    return deltas[entry];
+  }
+
+  /**
+   * Rebuild the state after the first position entries. Nothing about the engine changes, including its damage,
+   * events, and metrics.
+   * <P>
+   * precondition: 0 <= position <= size() and the engine is still on the board the history started on
+   * <P>
+   * @param position number of entries applied
+   * @return the state at that position
+   * @throws IllegalArgumentException if the engine has generated a new board since the history started
+   */
+  public GameState stateAt(int position)
+  {
+    checkPosition(position);
+    if (snapshots[position] != null)
+      return snapshots[position];
+    return rebuild(position);
+  }
+
+  /**
+   * Move the engine to the state after the first position entries and drop the entries after it. The engine's
+   * undo and redo stacks are cleared, since the states on them belong to the dropped branch.
+   * <P>
+   * precondition: 0 <= position <= size() and the engine is still on the board the history started on
+   * <P>
+   * @param position number of entries to keep
+   * @throws IllegalArgumentException if the engine has generated a new board since the history started
+   */
+  public void seek(int position)
+  {
+    checkPosition(position);
+    engine.restoreState(stateAt(position));
+    engine.clearUndo();
+    Arrays.fill(commands, position, size, null);
+    Arrays.fill(snapshots, position + 1, size + 1, null);
+    size = position;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * The state at a position: the nearest snapshot at or before it, restored on a copy of the engine, with the
+   * entries in between applied without saving undo states
+   */
+  private GameState rebuild(int position)
+  {
+    int from = position;
+    while (snapshots[from] == null)
+      from--;
+    // a fresh copy each time, so it has the engine's current layout and restoring a stale snapshot still fails
+    GameEngine scratch = engine.copy();
+    scratch.restoreState(snapshots[from]);
+    for (int i = from; i < position; i++)
+      commands[i].applyRules(scratch);
+    return scratch.saveState();
+  }
+
+  private void checkEntry(int entry)
+  {
+    if (entry < 0 || entry >= size)
+      throw new IndexOutOfBoundsException("entry " + entry + " of " + size);
+  }
+
+  private void checkPosition(int position)
+  {
+    if (position < 0 || position > size)
+      throw new IndexOutOfBoundsException("position " + position + " of " + size);
+  }
+}
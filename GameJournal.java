@@ -0,0 +1,334 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only binary record of a game: the board it was played on and every command applied, with the score
+ * change it caused.
+ * <P>
+ * The file starts with a fixed header holding the board size, seed, and the setWalls/setTraps/setPrizes and
+ * solvable configuration, so the board can be generated again with createBoard(long). Each command follows as one
+ * byte (the Command ordinal plus one) and its score change as a zig-zag varint, so a typical record takes two
+ * bytes. The file is written through a memory-mapped region that grows as needed: recording a command is a few
+ * stores into memory, and everything recorded survives the JVM dying without close(). A zero byte where a command
+ * would start marks the end of the records.
+ * <P>
+ * A Reader walks the records of a journal, and replay() rebuilds the game headlessly on a new engine, checking
+ * every score change against the one recorded. Run this class with journal files as arguments to replay them:
+ * <PRE>
+ * java GameJournal game.journal
+ * </PRE>
+ * A journal is written by one thread at a time, normally the GameActor's game-logic thread.
+ *
+ * @version 1.0
+ */
+public class GameJournal implements Closeable
+{
+  private static final int MAGIC = 0x45524A31; // "ERJ1"
+  private static final short VERSION = 1;
+  private static final short FLAG_SOLVABLE = 1;
+  // magic, version, flags, cols, rows, seed, walls, traps, prizes
+  private static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 8 + 4 + 4 + 4;
+  // command byte and a varint of up to 5 bytes
+  private static final int MAX_RECORD_SIZE = 6;
+  // how much of the file is mapped at a time
+  private static final int REGION_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private MappedByteBuffer region;
+  // file offset of the start of region
+  private long regionStart;
+  private int records;
+
+  /**
+   * Create (or replace) a journal for the board an engine is about to play. Call after createBoard() and before
+   * the first command is recorded.
+   * <P>
+   * @param file where to write the journal
+   * @param engine the game being recorded
+   * @throws IOException if the file can't be created
+   */
+  public GameJournal(Path file, GameEngine engine) throws IOException
+  {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    Board board = engine.getBoard();
+    region.putInt(MAGIC);
+    region.putShort(VERSION);
+    region.putShort(engine.isSolvable() ? FLAG_SOLVABLE : 0);
+    region.putInt(board.getCols());
+    region.putInt(board.getRows());
+    region.putLong(engine.getSeed());
+    region.putInt(engine.getWalls());
+    region.putInt(engine.getTraps());
+    region.putInt(engine.getPrizes());
+  }
+
+  /**
+   * Append a command and the score change it caused.
+   * <P>
+   * @param command the command applied
+   * @param delta the score change returned by Command.apply
+   * @throws UncheckedIOException if the file can't be extended
+   */
+  public void record(Command command, int delta)
+  {
+    if (region.remaining() < MAX_RECORD_SIZE)
+      nextRegion();
+    region.put((byte)(command.ordinal() + 1));
+    // zig-zag, so small penalties are as short as small rewards
+    int v = (delta << 1) ^ (delta >> 31);
+    while ((v & ~0x7F) != 0)
+    {
+      region.put((byte)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    region.put((byte)v);
+    records++;
+  }
+
+  /**
+   * Return the number of commands recorded so far.
+   */
+  public int getRecordCount()
+  {
+    return records;
+  }
+
+  /**
+   * Flush the journal and trim the file to the records written. Where the file can't be trimmed while it is still
+   * mapped (Windows keeps a mapping until the buffer is collected), it is left padded with zeros, which readers
+   * take as the end of the records.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (!channel.isOpen())
+      return;
+    try {
+      region.force();
+      long length = regionStart + region.position();
+      // let go of the mapping first, so the truncate has a chance of succeeding everywhere
+      region = null;
+      try {
+        channel.truncate(length);
+      } catch (IOException e) {
+        // still mapped; the zero padding ends the records just as well
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Rebuild a journaled game on a new engine: generate the board from the header, then apply every recorded
+   * command, checking that each one changes the score by the recorded amount.
+   * <P>
+   * @param file the journal to replay
+   * @return the engine in the state the game was in after its last recorded command
+   * @throws IOException if the file can't be read or isn't a journal
+   * @throws IllegalStateException if a command doesn't reproduce its recorded score change
+   */
+  public static GameEngine replay(Path file) throws IOException
+  {
+    Reader r = new Reader(file);
+    GameEngine engine = r.createEngine();
+    for (int n = 1; r.next(); n++)
+    {
+      int delta = r.getCommand().apply(engine);
+      if (delta != r.getDelta())
+        throw new IllegalStateException(file + ": record " + n + " (" + r.getCommand() + ") changed the score by "
+                                        + delta + ", journal has " + r.getDelta());
+    }
+    return engine;
+  }
+
+  /**
+   * Replay each journal named on the command line and print the final score the way EscapeRoom does, along with
+   * how fast the commands replayed.
+   */
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length == 0)
+    {
+      System.err.println("usage: java GameJournal journal...");
+      System.exit(2);
+    }
+    for (String name : args)
+    {
+      long start = System.nanoTime();
+      GameEngine engine = replay(Paths.get(name));
+      long nanos = System.nanoTime() - start;
+      engine.addToScore(engine.endGame());
+      System.out.println(name + ": seed=" + engine.getSeed() + " score=" + engine.getScore() + " steps="
+                         + engine.getSteps() + " coins=" + engine.getCoinsCollected() + " (" + nanos / 1000 + " us)");
+    }
+  }
+
+  /**
+   * Reads the header and records of a journal. The whole file is mapped read-only, so the records can be walked
+   * at memory speed.
+   */
+  public static class Reader
+  {
+    private final MappedByteBuffer data;
+    private final boolean solvable;
+    private final int cols;
+    private final int rows;
+    private final long seed;
+    private final int walls;
+    private final int traps;
+    private final int prizes;
+    private Command command;
+    private int delta;
+
+    /**
+     * Open a journal and read its header.
+     * <P>
+     * @param file the journal to read
+     * @throws IOException if the file can't be read or isn't a journal
+     */
+    public Reader(Path file) throws IOException
+    {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+          throw new IOException(file + ": not a game journal");
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+      if (data.getInt() != MAGIC)
+        throw new IOException(file + ": not a game journal");
+      short version = data.getShort();
+      if (version != VERSION)
+        throw new IOException(file + ": unsupported journal version " + version);
+      solvable = (data.getShort() & FLAG_SOLVABLE) != 0;
+      cols = data.getInt();
+      rows = data.getInt();
+      seed = data.getLong();
+      walls = data.getInt();
+      traps = data.getInt();
+      prizes = data.getInt();
+    }
+
+    /**
+     * Create an engine configured like the journaled one, with its board generated and the player at the start.
+     */
+    public GameEngine createEngine()
+    {
+      GameEngine engine = new GameEngine(cols, rows);
+      engine.setSolvable(solvable);
+      engine.setWalls(walls);
+      engine.setTraps(traps);
+      engine.setPrizes(prizes);
+      engine.createBoard(seed);
+      engine.replay();
+      return engine;
+    }
+
+    /**
+     * Move to the next record.
+     * <P>
+     * @return false at the end of the journal, including a record cut short by the writer dying
+     */
+    public boolean next()
+    {
+      if (!data.hasRemaining())
+        return false;
+      int c = data.get() & 0xFF;
+      Command[] commands = Command.values();
+      if (c == 0 || c > commands.length)
+        return false;
+      int v = 0;
+      for (int shift = 0; ; shift += 7)
+      {
+        if (!data.hasRemaining() || shift > 28)
+          return false;
+        int b = data.get();
+        v |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0)
+          break;
+      }
+      command = commands[c - 1];
+      delta = (v >>> 1) ^ -(v & 1);
+      return true;
+    }
+
+    /**
+     * Return the command of the current record.
+     */
+    public Command getCommand()
+    {
+      return command;
+    }
+
+    /**
+     * Return the score change recorded for the current command.
+     */
+    public int getDelta()
+    {
+      return delta;
+    }
+
+    public boolean isSolvable()
+    {
+      return solvable;
+    }
+
+    public int getCols()
+    {
+      return cols;
+    }
+
+    public int getRows()
+    {
+      return rows;
+    }
+
+    public long getSeed()
+    {
+      return seed;
+    }
+
+    public int getWalls()
+    {
+      return walls;
+    }
+
+    public int getTraps()
+    {
+      return traps;
+    }
+
+    public int getPrizes()
+    {
+      return prizes;
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Map the next stretch of the file, starting where the records written so far end
+   */
+  private void nextRegion()
+  {
+    try {
+      region.force();
+      regionStart += region.position();
+      region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Hot-path instrumentation: latency histograms for parsing, applying commands, and painting, and counts of game
+ * events and frames.
+ * <P>
+ * The parts of the game that do the work record into a GameMetrics when one is set on them: GameEngine counts its
+ * events, GameActor and GameServer time each command, UserInput and GameServer time parsing, and GameGUI times its
+ * paints and how long each snapshot waited to be painted; an ActiveRenderer adds the interval between its frames.
+ * Recording never locks or allocates, so one GameMetrics can be shared by every session of a server. When none is
+ * set, the only cost is a null check.
+ * <P>
+ * register() publishes the metrics as a JMX MXBean, and startDump() prints them every so often, to catch latency
+ * spikes under key-repeat or load as they happen.
+ *
+ * @version 1.0
+ */
+public class GameMetrics implements GameMetricsMXBean
+{
+  /** Name the metrics are registered under with the platform MBean server. */
+  public static final String OBJECT_NAME = "EscapeRoom:type=GameMetrics";
+
+  private final LatencyHistogram parse = new LatencyHistogram();
+  private final LatencyHistogram command = new LatencyHistogram();
+  private final LatencyHistogram repaint = new LatencyHistogram();
+  private final LatencyHistogram paint = new LatencyHistogram();
+  private final LatencyHistogram frame = new LatencyHistogram();
+  // striped, since every session of a server counts into the same metrics
+  private final LongAdder commands = new LongAdder();
+  private final LongAdder frames = new LongAdder();
+  private final LongAdder[] events = new LongAdder[GameEvent.Type.values().length];
+  private volatile long firstFrameMillis = -1;
+  private volatile long firstFullFrameMillis = -1;
+  private Thread dumper;
+
+  public GameMetrics()
+  {
+    for (int i = 0; i < events.length; i++)
+      events[i] = new LongAdder();
+  }
+
+  /**
+   * Record the time taken to parse a line of commands.
+   */
+  public void recordParse(long nanos)
+  {
+    parse.record(nanos);
+  }
+
+  /**
+   * Record the time taken to apply one command, and count it.
+   */
+  public void recordCommand(long nanos)
+  {
+    command.record(nanos);
+    commands.increment();
+  }
+
+  /**
+   * Record how long a snapshot waited to be painted.
+   */
+  public void recordRepaint(long nanos)
+  {
+    repaint.record(nanos);
+  }
+
+  /**
+   * Record the time taken to paint a frame, and count it.
+   */
+  public void recordPaint(long nanos)
+  {
+    paint.record(nanos);
+    frames.increment();
+  }
+
+  /**
+   * Record the time between the starts of two frames drawn by an active renderer.
+   */
+  public void recordFrame(long nanos)
+  {
+    frame.record(nanos);
+  }
+
+  /**
+   * Record how long after the JVM started the window painted its first frame, and its first frame with every
+   * image loaded; -1 for either that hasn't happened yet.
+   */
+  public void setStartup(long firstFrameMillis, long firstFullFrameMillis)
+  {
+    this.firstFrameMillis = firstFrameMillis;
+    this.firstFullFrameMillis = firstFullFrameMillis;
+  }
+
+  /**
+   * Count an event published by a game.
+   */
+  public void countEvent(GameEvent.Type type)
+  {
+    events[type.ordinal()].increment();
+  }
+
+  /**
+   * Return how many events of a type have been counted.
+   */
+  public long getEventCount(GameEvent.Type type)
+  {
+    return events[type.ordinal()].sum();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getParseLatency()
+  {
+    return parse.summarize();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getCommandLatency()
+  {
+    return command.summarize();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getRepaintLatency()
+  {
+    return repaint.summarize();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getPaintTime()
+  {
+    return paint.summarize();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getFrameInterval()
+  {
+    return frame.summarize();
+  }
+
+  @Override
+  public long getCommands()
+  {
+    return commands.sum();
+  }
+
+  @Override
+  public long getFramesPainted()
+  {
+    return frames.sum();
+  }
+
+  @Override
+  public long getFirstFrameMillis()
+  {
+    return firstFrameMillis;
+  }
+
+  @Override
+  public long getFirstFullFrameMillis()
+  {
+    return firstFullFrameMillis;
+  }
+
+  @Override
+  public long getWallHits()
+  {
+    return getEventCount(GameEvent.Type.BLOCKED_BY_WALL);
+  }
+
+  @Override
+  public long getOffGridMoves()
+  {
+    return getEventCount(GameEvent.Type.OFF_GRID);
+  }
+
+  @Override
+  public long getTrapsSprung()
+  {
+    return getEventCount(GameEvent.Type.TRAP_SPRUNG);
+  }
+
+  @Override
+  public long getPrizesCollected()
+  {
+    return getEventCount(GameEvent.Type.PRIZE_COLLECTED);
+  }
+
+  @Override
+  public long getMissedPickups()
+  {
+    return getEventCount(GameEvent.Type.NO_PRIZE);
+  }
+
+  @Override
+  public String dump()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("commands=").append(getCommands()).append(" frames=").append(getFramesPainted())
+      .append(" wallHits=").append(getWallHits()).append(" offGrid=").append(getOffGridMoves())
+      .append(" trapsSprung=").append(getTrapsSprung()).append(" prizes=").append(getPrizesCollected())
+      .append(" missedPickups=").append(getMissedPickups()).append('\n');
+    if (firstFrameMillis >= 0)
+      sb.append("  startup first frame ").append(firstFrameMillis).append(" ms, with images ")
+        .append(firstFullFrameMillis >= 0 ? firstFullFrameMillis + " ms" : "pending").append('\n');
+    sb.append("  parse   ").append(getParseLatency()).append('\n');
+    sb.append("  command ").append(getCommandLatency()).append('\n');
+    sb.append("  repaint ").append(getRepaintLatency()).append('\n');
+    sb.append("  paint   ").append(getPaintTime()).append('\n');
+    if (frame.getCount() > 0)
+      sb.append("  frame   ").append(getFrameInterval()).append('\n');
+    return sb.toString();
+  }
+
+  @Override
+  public void reset()
+  {
+    parse.reset();
+    command.reset();
+    repaint.reset();
+    paint.reset();
+    frame.reset();
+    commands.reset();
+    frames.reset();
+    for (LongAdder e : events)
+      e.reset();
+  }
+
+  /**
+   * Register these metrics with the platform MBean server under OBJECT_NAME, replacing any registered before.
+   * <P>
+   * @throws JMException if the JVM refuses the registration
+   */
+  public void register() throws JMException
+  {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (server.isRegistered(name))
+      server.unregisterMBean(name);
+    server.registerMBean(this, name);
+  }
+
+  /**
+   * Print dump() to a stream every periodMs milliseconds, from a daemon thread, until stopDump() is called.
+   * <P>
+   * precondition: periodMs is positive
+   * <P>
+   * @param out where to print, e.g. System.err so the dump doesn't mix with the console prompt
+   * @param periodMs time between dumps
+   */
+  public synchronized void startDump(final PrintStream out, final long periodMs)
+  {
+    stopDump();
+    dumper = new Thread(() -> {
+      try {
+        while (!Thread.currentThread().isInterrupted())
+        {
+          Thread.sleep(periodMs);
+          out.print("[metrics] " + dump());
+        }
+      } catch (InterruptedException e) {
+        // stopped
+      }
+    }, "metrics-dump");
+    dumper.setDaemon(true);
+    dumper.start();
+  }
+
+  /**
+   * Stop the periodic dump, if one is running.
+   */
+  public synchronized void stopDump()
+  {
+    if (dumper != null)
+    {
+      dumper.interrupt();
+      dumper = null;
+    }
+  }
+}
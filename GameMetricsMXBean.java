@@ -0,0 +1,51 @@
+/**
+ * Management interface of GameMetrics, as seen in JConsole, VisualVM, or any other JMX client under the name
+ * GameMetrics.OBJECT_NAME. Latencies are composite attributes holding a count, mean, percentiles, and maximum in
+ * microseconds.
+ *
+ * @version 1.0
+ */
+public interface GameMetricsMXBean
+{
+  /** Time to parse a line of typed or received commands. */
+  LatencyHistogram.Summary getParseLatency();
+
+  /** Time to apply one command to the engine: a move or jump, pickup, replay, undo, or redo. */
+  LatencyHistogram.Summary getCommandLatency();
+
+  /** Time from a snapshot being shown to the window until a paint that includes it has finished. */
+  LatencyHistogram.Summary getRepaintLatency();
+
+  /** Time spent in one paint of the window. */
+  LatencyHistogram.Summary getPaintTime();
+
+  /** Time between the starts of frames drawn by the active renderer; empty when the window relies on repaints. */
+  LatencyHistogram.Summary getFrameInterval();
+
+  long getCommands();
+
+  long getFramesPainted();
+
+  /** Milliseconds from JVM start to the window's first frame, -1 until painted. */
+  long getFirstFrameMillis();
+
+  /** Milliseconds from JVM start to the first frame with every image loaded rather than placeholders. */
+  long getFirstFullFrameMillis();
+
+  long getWallHits();
+
+  long getOffGridMoves();
+
+  long getTrapsSprung();
+
+  long getPrizesCollected();
+
+  /** Pickups where there was no prize. */
+  long getMissedPickups();
+
+  /** All the metrics as text, the same as the periodic dump. */
+  String dump();
+
+  /** Clear every histogram and counter. */
+  void reset();
+}
@@ -0,0 +1,590 @@
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+
+/**
+ * Hosts many headless games in one JVM, one per connection, over a line-based socket protocol.
+ * <P>
+ * Each connection gets its own GameEngine with the same rules the window plays by, and is served by its own
+ * virtual thread, so thousands of idle or slow players cost little more than their engines. On JVMs without
+ * virtual threads (before Java 21) sessions fall back to small-stack platform threads. The server listens on a
+ * loopback TCP port, or on a Unix-domain socket where the JVM supports them (Java 16 and later).
+ * <P>
+ * Protocol, one line at a time in ASCII:
+ * <PRE>
+ * server: WELCOME seed=&lt;seed&gt; size=&lt;cols&gt;x&lt;rows&gt;
+ * client: r r jd p            (any commands UserInput accepts, several per line)
+ * server: A WALL IS IN THE WAY (the console message of each event, if any)
+ * server: OK score=-5 steps=3 coins=1
+ * client: bogus
+ * server: ERR invalid command
+ * client: q
+ * server: OOPS, YOU QUIT TOO SOON!
+ * server: BYE score=-15 steps=3 coins=1
+ * </PRE>
+ * help answers with one "HELP" line per command listing its words. A line's commands are applied together, as in
+ * the console, and anything after quit is ignored. Closing the connection abandons the game.
+ * <P>
+ * With --shared every player joins the same SharedBoard instead of getting a board of their own, and they race
+ * each other for its traps and prizes; the greeting then ends with " shared players=&lt;n&gt;", counting the new
+ * player. Sessions still never wait for each other: claims are atomic per cell rather than under a lock.
+ * <P>
+ * Every session records into one GameMetrics: parse and command latencies and event counts, registered over JMX
+ * by main() and printed every n seconds with --metrics n.
+ * <P>
+ * Each session can undo its last DEFAULT_UNDO_LIMIT commands; --undo n changes that, and --undo 0 turns undo off
+ * for the leanest sessions.
+ * <P>
+ * Usage: java GameServer [--port n | --unix path] [--size WxH] [--seed n] [--solvable] [--shared] [--metrics n]
+ *                        [--undo n]
+ *
+ * @version 1.0
+ */
+public class GameServer
+{
+  /** Port used when none is given. */
+  public static final int DEFAULT_PORT = 7070;
+  /** Commands each session can undo unless setUndoLimit() says otherwise. */
+  public static final int DEFAULT_UNDO_LIMIT = 20;
+  // pending connections the OS may queue, so bursts of thousands of connects aren't refused
+  private static final int BACKLOG = 4096;
+  // stack for fallback platform threads; a session needs little, but the first ones also load classes
+  private static final long FALLBACK_STACK_SIZE = 256 * 1024;
+  // sessions read and write short lines, so small buffers keep per-session memory down
+  private static final int BUFFER_SIZE = 512;
+  // longest command line accepted; anything longer is answered with ERR
+  private static final int MAX_LINE = 4096;
+  private static final String USAGE = "Usage: java GameServer [--port n | --unix path] [--size WxH] [--seed n]"
+                                      + " [--solvable] [--shared] [--metrics n] [--undo n]";
+
+  private final ServerSocketChannel channel;
+  private final String unixPath;
+  private final int cols;
+  private final int rows;
+  private final int[] config;
+  private final boolean solvable;
+  // base seed for reproducible load tests: session n plays board boardSeed(seed, n); null for random boards
+  private final Long seed;
+  // the board every player joins in shared mode, otherwise null
+  private final SharedBoard shared;
+  private final ExecutorService sessions;
+  private final AtomicInteger sessionCount = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  // bumped by every session, so striped rather than one contended counter
+  private final LongAdder commands = new LongAdder();
+  private final GameMetrics metrics = new GameMetrics();
+  private volatile int undoLimit = DEFAULT_UNDO_LIMIT;
+
+  /**
+   * Open a server socket. Call serve() to start accepting players.
+   * <P>
+   * @param unixPath Unix-domain socket to listen on, or null to listen on the loopback TCP port
+   * @param port TCP port, ignored when unixPath is set; 0 picks a free port
+   * @param cols number of cells across each board
+   * @param rows number of cells down each board
+   * @param config {walls, traps, prizes} for each board
+   * @param solvable true to deal only solvable boards
+   * @param seed base seed for the boards, or null for random boards
+   * @param sharedBoard true to put every player on one shared board
+   * @throws IOException if the socket can't be opened, or Unix-domain sockets aren't supported
+   */
+  public GameServer(String unixPath, int port, int cols, int rows, int[] config, boolean solvable, Long seed,
+                    boolean sharedBoard) throws IOException
+  {
+    this.unixPath = unixPath;
+    this.cols = cols;
+    this.rows = rows;
+    this.config = config.clone();
+    this.solvable = solvable;
+    this.seed = seed;
+    shared = sharedBoard ? new SharedBoard(newEngine(0)) : null;
+    if (unixPath != null)
+    {
+      // a socket file left by a server that didn't shut down would make bind fail
+      Files.deleteIfExists(Paths.get(unixPath));
+      channel = openChannel(unixFamily());
+      channel.bind(unixAddress(unixPath), BACKLOG);
+    }
+    else
+    {
+      channel = ServerSocketChannel.open();
+      channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    }
+    sessions = newSessionExecutor("session-");
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    int port = DEFAULT_PORT;
+    String unixPath = null;
+    int cols = GameEngine.GRID_W;
+    int rows = GameEngine.GRID_H;
+    boolean solvable = false;
+    boolean shared = false;
+    long metricsPeriod = 0;
+    int undoLimit = DEFAULT_UNDO_LIMIT;
+    Long seed = null;
+    String option = null;
+    try {
+      for (int i = 0; i < args.length; i++)
+      {
+        option = args[i];
+        switch (option)
+        {
+          case "--port":
+            port = Integer.parseInt(value(args, ++i));
+            if (port < 0 || port > 65535)
+              throw new IllegalArgumentException("--port expects a port from 0 to 65535");
+            break;
+          case "--unix": unixPath = value(args, ++i); break;
+          case "--seed": seed = Long.parseLong(value(args, ++i)); break;
+          case "--solvable": solvable = true; break;
+          case "--shared": shared = true; break;
+          case "--metrics": metricsPeriod = Long.parseLong(value(args, ++i)); break;
+          case "--undo":
+            undoLimit = Integer.parseInt(value(args, ++i));
+            if (undoLimit < 0)
+              throw new IllegalArgumentException("--undo expects 0 or more commands");
+            break;
+          case "--size":
+            String[] size = value(args, ++i).toLowerCase().split("x");
+            if (size.length != 2)
+              throw new IllegalArgumentException("--size expects WxH, e.g. 40x25");
+            cols = Integer.parseInt(size[0]);
+            rows = Integer.parseInt(size[1]);
+            if (cols < 1 || rows < 1)
+              throw new IllegalArgumentException("--size expects a positive width and height");
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+      }
+    } catch (NumberFormatException e) {
+      System.err.println(option + " expects a number");
+      System.err.println(USAGE);
+      return;
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      return;
+    }
+    // same number of items per cell as the default 8x5 board
+    int cells = cols * rows;
+    int[] config = { Math.max(1, 20 * cells / 40), Math.max(1, 5 * cells / 40), Math.max(1, 3 * cells / 40) };
+
+    GameServer server = new GameServer(unixPath, port, cols, rows, config, solvable, seed, shared);
+    server.setUndoLimit(undoLimit);
+    System.out.println("EscapeRoom server listening on " + server.getAddress() + " ("
+                       + (isVirtualThreadSupported() ? "virtual threads" : "platform threads")
+                       + (shared ? ", shared board" : "") + ")");
+    try {
+      server.getMetrics().register();
+    } catch (JMException e) {
+      System.err.println("Could not register metrics with JMX: " + e.getMessage());
+    }
+    if (metricsPeriod > 0)
+      server.getMetrics().startDump(System.out, metricsPeriod * 1000);
+    server.serve();
+  }
+
+  /**
+   * Set how many commands each session can undo, for sessions that start from now on. Every undo state a session
+   * keeps is memory held for as long as the player stays connected, so the default is much shorter than a
+   * GameEngine's own.
+   * <P>
+   * precondition: limit is not negative
+   * <P>
+   * @param limit undo states kept per session, or 0 to turn undo off
+   */
+  public void setUndoLimit(int limit)
+  {
+    if (limit < 0)
+      throw new IllegalArgumentException("undo limit must not be negative: " + limit);
+    undoLimit = limit;
+  }
+
+  /**
+   * Return the address the server is listening on.
+   */
+  public SocketAddress getAddress() throws IOException
+  {
+    return channel.getLocalAddress();
+  }
+
+  /**
+   * Return the number of players connected right now.
+   */
+  public int getActiveSessions()
+  {
+    return active.get();
+  }
+
+  /**
+   * Return the number of commands applied across all sessions so far.
+   */
+  public long getCommandCount()
+  {
+    return commands.sum();
+  }
+
+  /**
+   * Return the latency histograms and event counts of all sessions.
+   */
+  public GameMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  /**
+   * Accept players until the server is closed, starting a session for each on its own thread.
+   */
+  public void serve() throws IOException
+  {
+    while (channel.isOpen())
+    {
+      final SocketChannel client;
+      try {
+        client = channel.accept();
+      } catch (IOException e) {
+        if (!channel.isOpen())
+          return;
+        throw e;
+      }
+      final int id = sessionCount.getAndIncrement();
+      sessions.execute(() -> session(client, id));
+    }
+  }
+
+  /**
+   * Stop accepting players. Sessions in progress run until their players quit or disconnect.
+   */
+  public void close() throws IOException
+  {
+    channel.close();
+    sessions.shutdown();
+    if (unixPath != null)
+      Files.deleteIfExists(Paths.get(unixPath));
+  }
+
+  /*------------------- package methods shared with the load client -------------------*/
+
+  /**
+   * Return true if this JVM can start virtual threads.
+   */
+  static boolean isVirtualThreadSupported()
+  {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Create an executor that runs each task on a new virtual thread, or on a new daemon platform thread with a
+   * small stack where virtual threads aren't available. The source stays compatible with Java 8, so the virtual
+   * thread executor is looked up by reflection.
+   */
+  static ExecutorService newSessionExecutor(final String namePrefix)
+  {
+    try {
+      Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)m.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      final AtomicInteger n = new AtomicInteger();
+      ThreadFactory threads = r -> {
+        Thread t = new Thread(null, r, namePrefix + n.getAndIncrement(), FALLBACK_STACK_SIZE);
+        t.setDaemon(true);
+        return t;
+      };
+      return Executors.newCachedThreadPool(threads);
+    }
+  }
+
+  /**
+   * Connect to a server on a Unix-domain socket, or on a TCP port of the loopback address if unixPath is null.
+   */
+  static SocketChannel connect(String unixPath, int port) throws IOException
+  {
+    if (unixPath == null)
+      return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    SocketChannel ch;
+    try {
+      ch = (SocketChannel)SocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unixFamily());
+    } catch (ReflectiveOperationException e) {
+      throw new IOException("Unix-domain sockets need Java 16 or later", e);
+    }
+    try {
+      ch.connect(unixAddress(unixPath));
+    } catch (IOException e) {
+      ch.close();
+      throw e;
+    }
+    return ch;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * The value following an option, or an IllegalArgumentException naming the option if there is none
+   */
+  private static String value(String[] args, int i)
+  {
+    if (i >= args.length)
+      throw new IllegalArgumentException(args[i - 1] + " needs a value");
+    return args[i];
+  }
+
+  /*
+   * Play one connection's game until the player quits or disconnects.
+   */
+  private void session(SocketChannel client, int id)
+  {
+    // the player counts as connected, and the channel is closed, even if their game can't be created
+    try (SocketChannel ch = client) {
+      int players = active.incrementAndGet();
+      // exactly one of engine and player is used
+      GameEngine engine = shared == null ? newEngine(id) : null;
+      SharedBoard.Player player = shared != null ? shared.newPlayer() : null;
+      List<GameEvent> events = new ArrayList<GameEvent>();
+      if (player != null)
+        player.setEventLog(events);
+      else
+        engine.setEventLog(events);
+
+      Connection conn = new Connection(ch);
+      StringBuilder reply = new StringBuilder(BUFFER_SIZE);
+      reply.append("WELCOME seed=").append(player != null ? shared.getSeed() : engine.getSeed())
+           .append(" size=").append(cols).append('x').append(rows);
+      if (player != null)
+        reply.append(" shared players=").append(players);
+      reply.append('\n');
+      conn.send(reply);
+
+      boolean playing = true;
+      String line;
+      while (playing && (line = conn.readLine()) != null)
+      {
+        long parseStart = System.nanoTime();
+        List<Command> cmds = UserInput.parseCommands(line);
+        metrics.recordParse(System.nanoTime() - parseStart);
+        if (cmds == null || cmds.isEmpty())
+        {
+          reply.append("ERR invalid command\n");
+          conn.send(reply);
+          continue;
+        }
+        for (Command c : cmds)
+        {
+          if (c == Command.QUIT)
+          {
+            playing = false;
+            break;
+          }
+          if (c == Command.HELP)
+            appendHelp(reply);
+          else
+          {
+            long start = System.nanoTime();
+            if (player != null)
+              player.apply(c);
+            else
+              c.apply(engine);
+            metrics.recordCommand(System.nanoTime() - start);
+            commands.increment();
+          }
+        }
+        if (player != null)
+        {
+          if (!playing)
+            player.addToScore(player.endGame());
+          appendEvents(reply, events);
+          appendStatus(reply, playing, player.getScore(), player.getSteps(), player.getCoinsCollected());
+        }
+        else
+        {
+          if (!playing)
+            engine.addToScore(engine.endGame());
+          appendEvents(reply, events);
+          appendStatus(reply, playing, engine.getScore(), engine.getSteps(), engine.getCoinsCollected());
+        }
+        conn.send(reply);
+      }
+    } catch (IOException e) {
+      // the player went away; nothing to tell them
+    } finally {
+      active.decrementAndGet();
+    }
+  }
+
+  /*
+   * Create a session's own game, or with id 0 the game whose board is shared.
+   */
+  private GameEngine newEngine(int id)
+  {
+    GameEngine engine = new GameEngine(cols, rows);
+    engine.setUndoLimit(undoLimit);
+    engine.setSolvable(solvable);
+    engine.setWalls(config[0]);
+    engine.setTraps(config[1]);
+    engine.setPrizes(config[2]);
+    if (seed != null)
+      engine.createBoard(BoardAnalyzer.boardSeed(seed, id));
+    else
+      engine.createBoard();
+    engine.replay();
+    return engine;
+  }
+
+  private static void appendStatus(StringBuilder reply, boolean playing, int score, int steps, int coins)
+  {
+    reply.append(playing ? "OK" : "BYE").append(" score=").append(score).append(" steps=").append(steps)
+         .append(" coins=").append(coins).append('\n');
+  }
+
+  /*
+   * Send the console message of each event, and count the events; sessions collect every event, so counting them
+   * here covers own and shared boards alike.
+   */
+  private void appendEvents(StringBuilder reply, List<GameEvent> events)
+  {
+    for (GameEvent e : events)
+    {
+      metrics.countEvent(e.getType());
+      String message = e.getType().getMessage();
+      if (message != null)
+        reply.append(message).append('\n');
+    }
+    events.clear();
+  }
+
+  private static void appendHelp(StringBuilder reply)
+  {
+    for (Command c : Command.values())
+    {
+      reply.append("HELP");
+      for (String alias : c.getAliases())
+        reply.append(' ').append(alias);
+      reply.append('\n');
+    }
+  }
+
+  /*
+   * Line I/O straight on a session's channel through small direct buffers. Readers and writers would add 8K
+   * buffers each way per session, and heap buffers would make the channel keep a per-thread cache of direct
+   * ones; the protocol is plain ASCII, so neither is needed.
+   */
+  private static class Connection
+  {
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder();
+
+    Connection(SocketChannel channel)
+    {
+      this.channel = channel;
+      in.flip();
+    }
+
+    /*
+     * Return the next line without its terminator, or null when the player disconnects. Lines longer than
+     * MAX_LINE come back empty, which is answered like any other invalid line.
+     */
+    String readLine() throws IOException
+    {
+      line.setLength(0);
+      boolean tooLong = false;
+      while (true)
+      {
+        while (in.hasRemaining())
+        {
+          char c = (char)(in.get() & 0xFF);
+          if (c == '\n')
+          {
+            int n = line.length();
+            if (n > 0 && line.charAt(n - 1) == '\r')
+              line.setLength(n - 1);
+            return tooLong ? "" : line.toString();
+          }
+          if (line.length() < MAX_LINE)
+            line.append(c);
+          else
+            tooLong = true;
+        }
+        in.clear();
+        int n = channel.read(in);
+        in.flip();
+        if (n < 0)
+          return line.length() > 0 && !tooLong ? line.toString() : null;
+      }
+    }
+
+    /*
+     * Write the reply and clear it for the next one.
+     */
+    void send(StringBuilder reply) throws IOException
+    {
+      for (int i = 0, n = reply.length(); i < n; )
+      {
+        out.clear();
+        for (; i < n && out.hasRemaining(); i++)
+          out.put((byte)reply.charAt(i));
+        out.flip();
+        while (out.hasRemaining())
+          channel.write(out);
+      }
+      reply.setLength(0);
+    }
+  }
+
+  /*
+   * Unix-domain socket support is looked up by reflection so the source still builds for Java 8
+   */
+  private static ProtocolFamily unixFamily() throws IOException
+  {
+    try {
+      return StandardProtocolFamily.valueOf("UNIX");
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unix-domain sockets need Java 16 or later");
+    }
+  }
+
+  private static SocketAddress unixAddress(String path) throws IOException
+  {
+    try {
+      Class<?> c = Class.forName("java.net.UnixDomainSocketAddress");
+      return (SocketAddress)c.getMethod("of", String.class).invoke(null, path);
+    } catch (ReflectiveOperationException e) {
+      throw new IOException("Unix-domain sockets need Java 16 or later", e);
+    }
+  }
+
+  private static ServerSocketChannel openChannel(ProtocolFamily family) throws IOException
+  {
+    try {
+      return (ServerSocketChannel)ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                                                           .invoke(null, family);
+    } catch (ReflectiveOperationException e) {
+      throw new IOException("Unix-domain sockets need Java 16 or later", e);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * An immutable picture of a game at one moment, safe to hand to other threads.
+ * <P>
+ * The game-logic thread publishes snapshots; the window and console read them without touching the live engine.
+ * A snapshot also carries the damage (changed cells and sidebar fields) since the previous snapshot, so a renderer
+ * can repaint only what changed.
+ *
+ * @version 1.0
+ */
+public class GameSnapshot
+{
+  // private copy of the board; never modified after construction
+  private final Board board;
+  private final int boardVersion;
+  private final long seed;
+  private final int playerCol;
+  private final int playerRow;
+  private final int score;
+  private final int steps;
+  private final int coins;
+
+  // damage since the previous snapshot
+  private final boolean fullyDirty;
+  private final int dirtyFields;
+  private final int[] dirtyCells;
+
+  GameSnapshot(Board board, int boardVersion, long seed, int playerCol, int playerRow, int score, int steps,
+               int coins, boolean fullyDirty, int dirtyFields, int[] dirtyCells)
+  {
+    this.board = board;
+    this.boardVersion = boardVersion;
+    this.seed = seed;
+    this.playerCol = playerCol;
+    this.playerRow = playerRow;
+    this.score = score;
+    this.steps = steps;
+    this.coins = coins;
+    this.fullyDirty = fullyDirty;
+    this.dirtyFields = dirtyFields;
+    this.dirtyCells = dirtyCells;
+  }
+
+  /**
+   * Return the board as it was when the snapshot was taken. Callers must not modify it.
+   */
+  public Board getBoard()
+  {
+    return board;
+  }
+
+  public int getBoardVersion()
+  {
+    return boardVersion;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  public int getPlayerCol()
+  {
+    return playerCol;
+  }
+
+  public int getPlayerRow()
+  {
+    return playerRow;
+  }
+
+  /**
+   * Return the x location the player is drawn at.
+   */
+  public int getPlayerX()
+  {
+    return playerCol * GameEngine.SPACE_SIZE + GameEngine.START_LOC_X;
+  }
+
+  /**
+   * Return the y location the player is drawn at.
+   */
+  public int getPlayerY()
+  {
+    return playerRow * GameEngine.SPACE_SIZE + GameEngine.START_LOC_Y;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public int getSteps()
+  {
+    return steps;
+  }
+
+  public int getCoinsCollected()
+  {
+    return coins;
+  }
+
+  public int getRemainingPrizes()
+  {
+    return board.getRemainingPrizes();
+  }
+
+  public int getRemainingTraps()
+  {
+    return board.getRemainingTraps();
+  }
+
+  public int getRemainingWalls()
+  {
+    return board.getRemainingWalls();
+  }
+
+  /**
+   * Return true if everything needs redrawing since the previous snapshot.
+   */
+  public boolean isFullyDirty()
+  {
+    return fullyDirty;
+  }
+
+  /**
+   * Return the sidebar fields changed since the previous snapshot, as GameEngine.DIRTY_ flags.
+   */
+  public int getDirtyFields()
+  {
+    return dirtyFields;
+  }
+
+  public int getDirtyCellCount()
+  {
+    return dirtyCells.length;
+  }
+
+  /**
+   * Return the i-th cell changed since the previous snapshot.
+   */
+  public int getDirtyCell(int i)
+  {
+    return dirtyCells[i];
+  }
+
+  /**
+   * Return the status line printed by the console after each command.
+   */
+  @Override
+  public String toString()
+  {
+    return "score=" + score + " steps=" + steps + " coins=" + coins;
+  }
+}
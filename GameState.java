@@ -0,0 +1,143 @@
+/**
+ * A saved point in a game that the engine can return to: the player location, score, steps, coins, and which
+ * traps and prizes are still on the board.
+ * <P>
+ * States are immutable and share their trap and prize sets with the board and with each other (see Board), so
+ * saving one is O(1) and a chain of undo states costs only the chunks that actually changed. Walls are not part of
+ * a state; a state can only be restored on the board layout it was saved from.
+ * <P>
+ * Each state carries the engine's Zobrist hashes, so states can be used as keys in hash maps and transposition
+ * tables: hashCode() is read from the hash, and equals() compares the layout fingerprint, location, counters, and
+ * items. States saved from different engines compare equal when they describe the same game.
+ *
+ * @version 1.0
+ */
+public class GameState
+{
+  // GameEngine layout version the state belongs to, and the board fingerprint of that layout
+  private final int layout;
+  private final long fingerprint;
+  // see GameEngine.getPositionHash() and getStateHash()
+  private final long positionHash;
+  private final long hash;
+  private final int playerCol;
+  private final int playerRow;
+  private final int steps;
+  private final int score;
+  private final int coins;
+  // never modified; may be shared with the board and other states
+  private final ChunkedBits traps;
+  private final ChunkedBits prizes;
+
+  GameState(int layout, long fingerprint, long positionHash, long hash, int playerCol, int playerRow, int steps,
+            int score, int coins, ChunkedBits traps, ChunkedBits prizes)
+  {
+    this.layout = layout;
+    this.fingerprint = fingerprint;
+    this.positionHash = positionHash;
+    this.hash = hash;
+    this.playerCol = playerCol;
+    this.playerRow = playerRow;
+    this.steps = steps;
+    this.score = score;
+    this.coins = coins;
+    this.traps = traps;
+    this.prizes = prizes;
+  }
+
+  public int getPlayerCol()
+  {
+    return playerCol;
+  }
+
+  public int getPlayerRow()
+  {
+    return playerRow;
+  }
+
+  public int getSteps()
+  {
+    return steps;
+  }
+
+  public int getScore()
+  {
+    return score;
+  }
+
+  public int getCoinsCollected()
+  {
+    return coins;
+  }
+
+  /**
+   * Return true if the trap on the cell had not been sprung when the state was saved.
+   */
+  public boolean hasTrap(int cell)
+  {
+    return traps.get(cell);
+  }
+
+  /**
+   * Return true if the prize on the cell had not been picked up when the state was saved.
+   */
+  public boolean hasPrize(int cell)
+  {
+    return prizes.get(cell);
+  }
+
+  /**
+   * Return the Zobrist hash of the layout, location, and remaining traps and prizes, ignoring the counters.
+   */
+  public long getPositionHash()
+  {
+    return positionHash;
+  }
+
+  /**
+   * Return the 64-bit hash of the whole state.
+   */
+  public long getHash()
+  {
+    return hash;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return (int)(hash ^ (hash >>> 32));
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o)
+      return true;
+    if (!(o instanceof GameState))
+      return false;
+    GameState s = (GameState)o;
+    return hash == s.hash && fingerprint == s.fingerprint && playerCol == s.playerCol
+        && playerRow == s.playerRow && steps == s.steps && score == s.score && coins == s.coins
+        && traps.sameBits(s.traps) && prizes.sameBits(s.prizes);
+  }
+
+  int getLayout()
+  {
+    return layout;
+  }
+
+  long getFingerprint()
+  {
+    return fingerprint;
+  }
+
+  ChunkedBits getTraps()
+  {
+    return traps;
+  }
+
+  ChunkedBits getPrizes()
+  {
+    return prizes;
+  }
+}
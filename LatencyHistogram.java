@@ -0,0 +1,218 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds that any number of threads can record into without locking.
+ * <P>
+ * Buckets are log-linear: each power of two is split into eight buckets, so a percentile is off by at most one
+ * eighth of its value, and the whole range from one nanosecond to about a minute fits in 272 counters. Recording
+ * is one atomic increment plus, for a new maximum, one compare-and-set, and allocates nothing. Reading while other
+ * threads record gives a consistent enough picture for monitoring, not an exact cut.
+ *
+ * @version 1.0
+ */
+public class LatencyHistogram
+{
+  // values below 2^SUB_BITS ns get a bucket each; above that each power of two is split into 2^SUB_BITS buckets
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  // longest latency told apart, 2^36 ns or about 69 seconds; anything longer lands in the last bucket
+  private static final int MAX_EXPONENT = 36;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Count one latency.
+   * <P>
+   * @param nanos the latency in nanoseconds; negative values count as zero
+   */
+  public void record(long nanos)
+  {
+    if (nanos < 0)
+      nanos = 0;
+    counts.getAndIncrement(bucket(nanos));
+    total.add(nanos);
+    long m = max.get();
+    while (nanos > m && !max.compareAndSet(m, nanos))
+      m = max.get();
+  }
+
+  /**
+   * Return the number of latencies recorded.
+   */
+  public long getCount()
+  {
+    long n = 0;
+    for (int i = 0; i < BUCKETS; i++)
+      n += counts.get(i);
+    return n;
+  }
+
+  /**
+   * Return the longest latency recorded, in nanoseconds.
+   */
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  /**
+   * Return the latency that the given fraction of recorded latencies are at or below, in nanoseconds, rounded up
+   * to the end of its bucket; 0 if nothing has been recorded.
+   * <P>
+   * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+   */
+  public long getPercentile(double fraction)
+  {
+    long[] c = new long[BUCKETS];
+    long n = 0;
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      c[i] = counts.get(i);
+      n += c[i];
+    }
+    return percentile(c, n, fraction);
+  }
+
+  /**
+   * Forget everything recorded so far.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < BUCKETS; i++)
+      counts.set(i, 0);
+    total.reset();
+    max.set(0);
+  }
+
+  /**
+   * Return the count, mean, common percentiles, and maximum, read in one pass.
+   */
+  public Summary summarize()
+  {
+    long[] c = new long[BUCKETS];
+    long n = 0;
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      c[i] = counts.get(i);
+      n += c[i];
+    }
+    double mean = n == 0 ? 0 : (double)total.sum() / n;
+    return new Summary(n, mean / 1e3, percentile(c, n, 0.50) / 1e3, percentile(c, n, 0.90) / 1e3,
+                       percentile(c, n, 0.99) / 1e3, percentile(c, n, 0.999) / 1e3, max.get() / 1e3);
+  }
+
+  /**
+   * A histogram's count and latencies in microseconds at one moment. Shown as a composite attribute over JMX.
+   */
+  public static class Summary
+  {
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    Summary(long count, double meanMicros, double p50Micros, double p90Micros, double p99Micros, double p999Micros,
+            double maxMicros)
+    {
+      this.count = count;
+      this.meanMicros = meanMicros;
+      this.p50Micros = p50Micros;
+      this.p90Micros = p90Micros;
+      this.p99Micros = p99Micros;
+      this.p999Micros = p999Micros;
+      this.maxMicros = maxMicros;
+    }
+
+    public long getCount()
+    {
+      return count;
+    }
+
+    public double getMeanMicros()
+    {
+      return meanMicros;
+    }
+
+    public double getP50Micros()
+    {
+      return p50Micros;
+    }
+
+    public double getP90Micros()
+    {
+      return p90Micros;
+    }
+
+    public double getP99Micros()
+    {
+      return p99Micros;
+    }
+
+    public double getP999Micros()
+    {
+      return p999Micros;
+    }
+
+    public double getMaxMicros()
+    {
+      return maxMicros;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", count,
+                           meanMicros, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private static int bucket(long nanos)
+  {
+    if (nanos < SUB_BUCKETS)
+      return (int)nanos;
+    int e = 63 - Long.numberOfLeadingZeros(nanos);
+    if (e >= MAX_EXPONENT)
+      return BUCKETS - 1;
+    return (e - SUB_BITS + 1) * SUB_BUCKETS + (int)((nanos >>> (e - SUB_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  /*
+   * First value past the end of a bucket
+   */
+  private static long bucketEnd(int bucket)
+  {
+    if (bucket < SUB_BUCKETS)
+      return bucket + 1;
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift;
+  }
+
+  /*
+   * The end of the bucket holding the value of the given rank, no more than the largest value recorded; the
+   * largest value itself for the last bucket, which has no end
+   */
+  private long percentile(long[] c, long n, double fraction)
+  {
+    if (n == 0)
+      return 0;
+    long rank = Math.max(1, (long)Math.ceil(fraction * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      seen += c[i];
+      if (seen >= rank)
+        return i == BUCKETS - 1 ? max.get() : Math.min(bucketEnd(i) - 1, max.get());
+    }
+    return max.get();
+  }
+}
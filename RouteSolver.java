@@ -0,0 +1,400 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes optimal routes from the start cell to the far right column of a board, using the same move, jump,
+ * trap, and prize rules as GameEngine.movePlayer.
+ * <P>
+ * The solver runs a breadth-first search over (cell, sprung-trap set, collected-prize set) states. It returns the
+ * route with the fewest steps (highest score among those) and the route with the highest score (fewest steps among
+ * those). Landing on a trap that hides a prize is followed by a free pickup ("p"), since pickups cost no steps.
+ * <P>
+ * Results are cached by board fingerprint, so asking again about the same board is a map lookup. Boards with too
+ * many cells and items for a full state search fall back to a plain cell search, which only finds the fewest-steps
+ * route.
+ *
+ * @version 1.0
+ */
+public class RouteSolver
+{
+  // moves as {cells right, cells down}, with the console command for each
+  static final int[][] MOVES = { {1, 0}, {-1, 0}, {0, -1}, {0, 1}, {2, 0}, {-2, 0}, {0, -2}, {0, 2} };
+  static final String[] MOVE_COMMANDS = { "r", "l", "u", "d", "jr", "jl", "ju", "jd" };
+
+  // largest (cells * 2^items) state space searched exhaustively
+  private static final long STATE_LIMIT = 1L << 22;
+  private static final int CACHE_SIZE = 1024;
+  // action flag: the move is followed by a pickup of the prize hidden under the trap just sprung
+  private static final int PICKUP = 8;
+
+  private final Map<Long, Solution> cache = Collections.synchronizedMap(
+    new LinkedHashMap<Long, Solution>(16, 0.75f, true) {
+      static final long serialVersionUID = 1L;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Solution> eldest)
+      {
+        return size() > CACHE_SIZE;
+      }
+    });
+
+  /**
+   * A sequence of console commands from the start cell to the far right column.
+   */
+  public static class Route
+  {
+    private final List<String> commands;
+    private final int steps;
+    private final int score;
+
+    Route(List<String> commands, int steps, int score)
+    {
+      this.commands = Collections.unmodifiableList(commands);
+      this.steps = steps;
+      this.score = score;
+    }
+
+    /**
+     * Return the commands to enter, e.g. ["r", "jd", "p", "jr"].
+     */
+    public List<String> getCommands()
+    {
+      return commands;
+    }
+
+    /**
+     * Return the number of steps the route takes.
+     */
+    public int getSteps()
+    {
+      return steps;
+    }
+
+    /**
+     * Return the score at the end of the route, including the bonus for ending on the far right wall.
+     */
+    public int getScore()
+    {
+      return score;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "steps=" + steps + " score=" + score + " " + String.join(" ", commands);
+    }
+  }
+
+  /**
+   * The optimal routes for one board.
+   */
+  public static class Solution
+  {
+    private final Route fewestSteps;
+    private final Route bestScore;
+
+    Solution(Route fewestSteps, Route bestScore)
+    {
+      this.fewestSteps = fewestSteps;
+      this.bestScore = bestScore;
+    }
+
+    /**
+     * Return true if the far right column can be reached from the start cell.
+     */
+    public boolean isSolvable()
+    {
+      return fewestSteps != null;
+    }
+
+    /**
+     * Return the route with the fewest steps, or null if the board cannot be solved.
+     */
+    public Route getFewestSteps()
+    {
+      return fewestSteps;
+    }
+
+    /**
+     * Return the route with the highest score, or null if the board cannot be solved or was too large
+     * to search exhaustively.
+     */
+    public Route getBestScore()
+    {
+      return bestScore;
+    }
+  }
+
+  /**
+   * Solve the board of an engine as it was generated, starting from the start cell with every trap and prize active.
+   * <P>
+   * @param engine engine whose board and score values are used
+   * @return the optimal routes
+   */
+  public Solution solve(GameEngine engine)
+  {
+    Board board = engine.getBoard();
+    long key = board.fingerprint()
+      ^ (((long)engine.getPrizeVal() << 40) | ((long)engine.getTrapVal() << 20) | engine.getEndVal());
+    Solution s = cache.get(key);
+    if (s == null)
+    {
+      s = search(board, engine.getPrizeVal(), engine.getTrapVal(), engine.getEndVal());
+      cache.put(key, s);
+    }
+    return s;
+  }
+
+  /**
+   * Return the fewest steps from the start cell to the far right column, or -1 if it cannot be reached.
+   * This is the uncached cell search used for batch runs; the scratch arrays are reused between calls so
+   * each thread can solve many boards without allocating.
+   * <P>
+   * precondition: dist and queue have at least board.getCellCount() entries
+   * <P>
+   * @param board board to solve, as generated
+   * @param dist scratch array
+   * @param queue scratch array
+   * @return number of steps on the shortest route, or -1 if there is no route
+   */
+  public static int fewestSteps(Board board, int[] dist, int[] queue)
+  {
+    int cells = board.getCellCount();
+    java.util.Arrays.fill(dist, 0, cells, -1);
+    int size = 0;
+    queue[size++] = 0;
+    dist[0] = 0;
+
+    int lastCol = board.getCols() - 1;
+    for (int head = 0; head < size; head++)
+    {
+      int cell = queue[head];
+      int col = board.colOf(cell);
+      if (col == lastCol)
+        return dist[cell];
+      int row = board.rowOf(cell);
+      for (int m = 0; m < MOVES.length; m++)
+      {
+        int to = board.cell(col + MOVES[m][0], row + MOVES[m][1]);
+        if (to < 0 || dist[to] >= 0 || board.isBlocked(cell, MOVES[m][0], MOVES[m][1]))
+          continue;
+        dist[to] = dist[cell] + 1;
+        queue[size++] = to;
+      }
+    }
+    return -1;
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private Solution search(Board board, int prizeVal, int trapVal, int endVal)
+  {
+    int cells = board.getCellCount();
+
+    // number the traps and prizes so each has a bit in the state
+    int traps = 0;
+    int prizes = 0;
+    for (int c = board.nextInitialTrap(0); c >= 0; c = board.nextInitialTrap(c + 1))
+      traps++;
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      prizes++;
+
+    int items = traps + prizes;
+    if (items > 31 || ((long)cells << items) > STATE_LIMIT)
+      return new Solution(cellSearch(board, prizeVal, trapVal, endVal), null);
+
+    int[] trapBit = new int[cells];
+    int[] prizeBit = new int[cells];
+    int bit = 0;
+    for (int c = board.nextInitialTrap(0); c >= 0; c = board.nextInitialTrap(c + 1))
+      trapBit[c] = ++bit;
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      prizeBit[c] = ++bit;
+    long trapMask = (1L << traps) - 1;
+
+    // states are numbered mask * cells + cell; the BFS queue doubles as the record of every visited state
+    int[] keys = new int[64];
+    int[] parent = new int[64];
+    byte[] action = new byte[64];
+    int[] depth = new int[64];
+    long[] seen = new long[(int)((((long)cells << items) + 63) >>> 6)];
+
+    // a prize on the start cell can be picked up before moving
+    long startMask = prizeBit[0] > 0 ? 1L << (prizeBit[0] - 1) : 0;
+    keys[0] = (int)(startMask * cells);
+    parent[0] = -1;
+    seen[keys[0] >>> 6] |= 1L << keys[0];
+    int size = 1;
+
+    int fewest = -1;
+    int best = -1;
+    int lastCol = board.getCols() - 1;
+    for (int head = 0; head < size; head++)
+    {
+      int cell = keys[head] % cells;
+      long mask = keys[head] / cells;
+
+      if (board.colOf(cell) == lastCol)
+      {
+        int sc = score(mask, trapMask, prizeVal, trapVal);
+        if (fewest < 0 || (depth[head] == depth[fewest] && sc > score(keys[fewest] / cells, trapMask, prizeVal, trapVal)))
+          fewest = head;
+        if (best < 0 || sc > score(keys[best] / cells, trapMask, prizeVal, trapVal))
+          best = head;
+      }
+
+      int col = board.colOf(cell);
+      int row = board.rowOf(cell);
+      for (int m = 0; m < MOVES.length; m++)
+      {
+        int to = board.cell(col + MOVES[m][0], row + MOVES[m][1]);
+        if (to < 0 || board.isBlocked(cell, MOVES[m][0], MOVES[m][1]))
+          continue;
+
+        // landing springs an active trap; otherwise it picks up a prize
+        long next = mask;
+        int act = m;
+        long t = trapBit[to] > 0 ? 1L << (trapBit[to] - 1) : 0;
+        long p = prizeBit[to] > 0 ? 1L << (prizeBit[to] - 1) : 0;
+        if (t != 0 && (mask & t) == 0)
+        {
+          next |= t;
+          if (p != 0 && (mask & p) == 0)
+          {
+            next |= p;
+            act |= PICKUP;
+          }
+        }
+        else
+        {
+          next |= p;
+        }
+
+        int nextKey = (int)(next * cells + to);
+        if ((seen[nextKey >>> 6] & (1L << nextKey)) != 0)
+          continue;
+        seen[nextKey >>> 6] |= 1L << nextKey;
+        if (size == keys.length)
+        {
+          keys = java.util.Arrays.copyOf(keys, size * 2);
+          parent = java.util.Arrays.copyOf(parent, size * 2);
+          action = java.util.Arrays.copyOf(action, size * 2);
+          depth = java.util.Arrays.copyOf(depth, size * 2);
+        }
+        keys[size] = nextKey;
+        parent[size] = head;
+        action[size] = (byte)act;
+        depth[size] = depth[head] + 1;
+        size++;
+      }
+    }
+
+    if (fewest < 0)
+      return new Solution(null, null);
+    return new Solution(
+      route(parent, action, depth, fewest, startMask != 0,
+            score(keys[fewest] / cells, trapMask, prizeVal, trapVal) + endVal),
+      route(parent, action, depth, best, startMask != 0,
+            score(keys[best] / cells, trapMask, prizeVal, trapVal) + endVal));
+  }
+
+  /*
+   * Fewest-steps search over cells only, for boards too large for the full state search. Traps and prizes do not
+   * affect movement, so this finds the same number of steps; the score is then worked out along the route.
+   */
+  private Route cellSearch(Board board, int prizeVal, int trapVal, int endVal)
+  {
+    int cells = board.getCellCount();
+    int[] parent = new int[cells];
+    byte[] action = new byte[cells];
+    java.util.Arrays.fill(parent, -2);
+    int[] queue = new int[cells];
+    int size = 0;
+    queue[size++] = 0;
+    parent[0] = -1;
+
+    int lastCol = board.getCols() - 1;
+    int goal = -1;
+    for (int head = 0; head < size && goal < 0; head++)
+    {
+      int cell = queue[head];
+      if (board.colOf(cell) == lastCol)
+      {
+        goal = cell;
+        break;
+      }
+      int col = board.colOf(cell);
+      int row = board.rowOf(cell);
+      for (int m = 0; m < MOVES.length; m++)
+      {
+        int to = board.cell(col + MOVES[m][0], row + MOVES[m][1]);
+        if (to < 0 || parent[to] != -2 || board.isBlocked(cell, MOVES[m][0], MOVES[m][1]))
+          continue;
+        parent[to] = cell;
+        action[to] = (byte)m;
+        queue[size++] = to;
+      }
+    }
+    if (goal < 0)
+      return null;
+
+    List<Integer> path = new ArrayList<Integer>();
+    for (int c = goal; c != 0; c = parent[c])
+      path.add(c);
+    Collections.reverse(path);
+
+    // replay the landing rules along the route
+    List<String> commands = new ArrayList<String>();
+    Set<Integer> sprung = new HashSet<Integer>();
+    Set<Integer> collected = new HashSet<Integer>();
+    int score = endVal;
+    if (board.hasInitialPrize(0))
+    {
+      commands.add("p");
+      collected.add(0);
+      score += prizeVal;
+    }
+    for (int c : path)
+    {
+      commands.add(MOVE_COMMANDS[action[c]]);
+      if (board.hasInitialTrap(c) && sprung.add(c))
+      {
+        score += trapVal;
+        if (board.hasInitialPrize(c) && collected.add(c))
+        {
+          commands.add("p");
+          score += prizeVal;
+        }
+      }
+      else if (board.hasInitialPrize(c) && collected.add(c))
+      {
+        score += prizeVal;
+      }
+    }
+    return new Route(commands, path.size(), score);
+  }
+
+  private static Route route(int[] parent, byte[] action, int[] depth, int state, boolean startPickup, int score)
+  {
+    List<String> commands = new ArrayList<String>();
+    for (int s = state; parent[s] >= 0; s = parent[s])
+    {
+      if ((action[s] & PICKUP) != 0)
+        commands.add("p");
+      commands.add(MOVE_COMMANDS[action[s] & 7]);
+    }
+    if (startPickup)
+      commands.add("p");
+    Collections.reverse(commands);
+    return new Route(commands, depth[state], score);
+  }
+
+  private static int score(long mask, long trapMask, int prizeVal, int trapVal)
+  {
+    return Long.bitCount(mask & trapMask) * trapVal + Long.bitCount(mask & ~trapMask) * prizeVal;
+  }
+}
@@ -0,0 +1,345 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One board played by several players at once, each on their own thread, competing for its traps and prizes.
+ * <P>
+ * The walls never change during play, so they are read from a copy of the engine's Board without locking. Traps and
+ * prizes are one bit per cell in AtomicLongArray chunks, and springing a trap or picking up a prize clears its bit
+ * with a compare-and-set: whichever player's CAS clears the bit gets the points, and every other player finds the
+ * cell empty, so a coin can never be collected twice. There is no lock anywhere, and players only touch the same
+ * memory when they claim items in the same 64-cell word, so moves from many threads proceed in parallel.
+ * <P>
+ * Each Player keeps its own location, score, steps, and coins and follows the same rules as
+ * GameEngine.movePlayerByCells, pickupPrize, and endGame. Items are not reset while players share a board: REPLAY
+ * sends only that player back to the start, and UNDO and REDO do nothing, since a claimed prize may already be in
+ * someone else's pocket.
+ *
+ * @version 1.0
+ */
+public class SharedBoard
+{
+  private static final int WORD_SHIFT = 6;
+  // cells per chunk, as in ChunkedBits
+  private static final int CHUNK_SHIFT = 12;
+  private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - WORD_SHIFT);
+
+  // walls only; its traps and prizes are never read
+  private final Board walls;
+  private final int cols;
+  private final long seed;
+  // one bit per cell, null for chunks that started without any
+  private final AtomicLongArray[] traps;
+  private final AtomicLongArray[] prizes;
+  private final AtomicInteger remainingTraps = new AtomicInteger();
+  private final AtomicInteger remainingPrizes = new AtomicInteger();
+
+  // scores, as in GameEngine
+  private final int prizeVal;
+  private final int trapVal;
+  private final int endVal;
+  private final int offGridVal;
+  private final int hitWallVal;
+
+  /**
+   * Share the board an engine is playing, with the traps and prizes it has left.
+   * <P>
+   * @param engine the game whose board to share; later changes to it don't affect this board
+   */
+  public SharedBoard(GameEngine engine)
+  {
+    Board board = engine.getBoard();
+    walls = board.copy();
+    cols = board.getCols();
+    seed = engine.getSeed();
+    int chunks = (int)(((long)board.getCellCount() + (1 << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+    traps = new AtomicLongArray[chunks];
+    prizes = new AtomicLongArray[chunks];
+    for (int c = board.nextTrap(0); c >= 0; c = board.nextTrap(c + 1))
+      add(traps, remainingTraps, c);
+    for (int c = board.nextPrize(0); c >= 0; c = board.nextPrize(c + 1))
+      add(prizes, remainingPrizes, c);
+    prizeVal = engine.getPrizeVal();
+    trapVal = engine.getTrapVal();
+    endVal = engine.getEndVal();
+    offGridVal = engine.getOffGridVal();
+    hitWallVal = engine.getHitWallVal();
+  }
+
+  /**
+   * Add a player at the start of the board.
+   */
+  public Player newPlayer()
+  {
+    return new Player();
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  public int getRows()
+  {
+    return walls.getRows();
+  }
+
+  /**
+   * Return the seed of the board being shared.
+   */
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  public boolean hasTrap(int cell)
+  {
+    return has(traps, cell);
+  }
+
+  public boolean hasPrize(int cell)
+  {
+    return has(prizes, cell);
+  }
+
+  /**
+   * Spring the trap on a cell, if no player has yet.
+   * <P>
+   * @return true if this call sprang it, false if there was no trap or another player got there first
+   */
+  public boolean claimTrap(int cell)
+  {
+    return claim(traps, remainingTraps, cell);
+  }
+
+  /**
+   * Pick up the prize on a cell, if no player has yet.
+   * <P>
+   * @return true if this call took it, false if there was no prize or another player got there first
+   */
+  public boolean claimPrize(int cell)
+  {
+    return claim(prizes, remainingPrizes, cell);
+  }
+
+  public int getRemainingTraps()
+  {
+    return remainingTraps.get();
+  }
+
+  public int getRemainingPrizes()
+  {
+    return remainingPrizes.get();
+  }
+
+  /**
+   * A player on a shared board. A player is moved by one thread at a time; different players may be moved by
+   * different threads at the same time.
+   */
+  public class Player
+  {
+    private int col;
+    private int row;
+    private int steps;
+    private int score;
+    private int coins;
+    private List<GameEvent> eventLog;
+
+    private Player()
+    {
+    }
+
+    /**
+     * Apply a command and add the result to this player's score. REPLAY sends the player back to the start,
+     * scoring as endGame() does, with the score, steps, and coins cleared first; UNDO, REDO, HELP, and QUIT do
+     * nothing.
+     * <P>
+     * @param command the command to apply
+     * @return the score change
+     */
+    public int apply(Command command)
+    {
+      int delta;
+      if (command.isMove())
+        delta = movePlayerByCells(command.getCellsX(), command.getCellsY());
+      else if (command == Command.PICKUP)
+        delta = pickupPrize();
+      else if (command == Command.REPLAY)
+      {
+        delta = endGame();
+        col = 0;
+        row = 0;
+        steps = 0;
+        score = 0;
+        coins = 0;
+      }
+      else
+        return 0;
+      score += delta;
+      return delta;
+    }
+
+    /**
+     * Move the player a number of cells in a straight line, springing any trap or picking up any prize where
+     * the player lands, as GameEngine.movePlayerByCells does.
+     * <P>
+     * precondition: only one of cellsX and cellsY is non-zero
+     * <P>
+     * @return penalty score for hitting a wall or going off the grid, otherwise the score for traps and prizes
+     */
+    public int movePlayerByCells(int cellsX, int cellsY)
+    {
+      steps++;
+      int to = walls.cell(col + cellsX, row + cellsY);
+      if (to < 0)
+      {
+        publish(GameEvent.Type.OFF_GRID, -offGridVal);
+        return -offGridVal;
+      }
+      if (walls.isBlocked(walls.cell(col, row), cellsX, cellsY))
+      {
+        publish(GameEvent.Type.BLOCKED_BY_WALL, -hitWallVal);
+        return -hitWallVal;
+      }
+      col += cellsX;
+      row += cellsY;
+      publish(GameEvent.Type.MOVED, 0);
+
+      // a trap hides any prize under it, for whoever springs it
+      if (claimTrap(to))
+      {
+        publish(GameEvent.Type.TRAP_SPRUNG, trapVal);
+        return trapVal;
+      }
+      if (claimPrize(to))
+      {
+        coins++;
+        publish(GameEvent.Type.PRIZE_COLLECTED, prizeVal);
+        return prizeVal;
+      }
+      return 0;
+    }
+
+    /**
+     * Pick up the prize where the player stands. Penalized if there is none, including when another player took
+     * it first.
+     */
+    public int pickupPrize()
+    {
+      if (claimPrize(walls.cell(col, row)))
+      {
+        coins++;
+        publish(GameEvent.Type.PRIZE_COLLECTED, prizeVal);
+        return prizeVal;
+      }
+      publish(GameEvent.Type.NO_PRIZE, -prizeVal);
+      return -prizeVal;
+    }
+
+    /**
+     * Check if the player made it to the far right wall.
+     * <P>
+     * @return positive score for reaching the far right wall, penalty otherwise
+     */
+    public int endGame()
+    {
+      if (col == cols - 1)
+      {
+        publish(GameEvent.Type.REACHED_END, endVal);
+        return endVal;
+      }
+      publish(GameEvent.Type.QUIT_EARLY, -endVal);
+      return -endVal;
+    }
+
+    public void addToScore(int delta)
+    {
+      score += delta;
+    }
+
+    public int getCol()
+    {
+      return col;
+    }
+
+    public int getRow()
+    {
+      return row;
+    }
+
+    public int getScore()
+    {
+      return score;
+    }
+
+    public int getSteps()
+    {
+      return steps;
+    }
+
+    public int getCoinsCollected()
+    {
+      return coins;
+    }
+
+    /**
+     * Collect this player's events into a list, as GameEngine.setEventLog does, or stop collecting them if log
+     * is null.
+     */
+    public void setEventLog(List<GameEvent> log)
+    {
+      eventLog = log;
+    }
+
+    /*
+     * Log an event at the player's cell. Nothing is allocated when no one is collecting them.
+     */
+    private void publish(GameEvent.Type type, int points)
+    {
+      if (eventLog != null)
+        eventLog.add(new GameEvent(type, col, row, points));
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private static void add(AtomicLongArray[] set, AtomicInteger remaining, int cell)
+  {
+    int c = cell >>> CHUNK_SHIFT;
+    if (set[c] == null)
+      set[c] = new AtomicLongArray(CHUNK_WORDS);
+    int w = (cell >>> WORD_SHIFT) & (CHUNK_WORDS - 1);
+    set[c].set(w, set[c].get(w) | (1L << cell));
+    remaining.incrementAndGet();
+  }
+
+  private static boolean has(AtomicLongArray[] set, int cell)
+  {
+    AtomicLongArray chunk = set[cell >>> CHUNK_SHIFT];
+    return chunk != null && (chunk.get((cell >>> WORD_SHIFT) & (CHUNK_WORDS - 1)) & (1L << cell)) != 0;
+  }
+
+  /*
+   * Clear a cell's bit if it is set. Only the caller whose CAS clears the bit gets true; the plain read first
+   * keeps the common case, an empty cell, free of any write to shared memory.
+   */
+  private static boolean claim(AtomicLongArray[] set, AtomicInteger remaining, int cell)
+  {
+    AtomicLongArray chunk = set[cell >>> CHUNK_SHIFT];
+    if (chunk == null)
+      return false;
+    int w = (cell >>> WORD_SHIFT) & (CHUNK_WORDS - 1);
+    long bit = 1L << cell;
+    long old;
+    do
+    {
+      old = chunk.get(w);
+      if ((old & bit) == 0)
+        return false;
+    }
+    while (!chunk.compareAndSet(w, old, old & ~bit));
+    remaining.decrementAndGet();
+    return true;
+  }
+}
@@ -0,0 +1,299 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Repairs randomly placed walls so that the far right column and every prize can be reached from the start cell.
+ * <P>
+ * Jumps cannot cross walls and land two single steps away, so a cell can be reached by jumping only if it can be
+ * reached by walking. Connectivity is therefore checked on the grid of single steps.
+ * <P>
+ * Walls only remove edges from that grid, so the repair runs in reverse: a union-find is built over every open
+ * edge, then the most recently placed walls are taken back down (unioning their edges) until the board is
+ * connected. Replacement walls are then tried at random positions until the requested number of walls is reached
+ * or the attempts run out. A wall that goes up can only cut the board where it separates two cells, so each one is
+ * checked by searching outward from both of those cells at once: if the searches meet, the wall cut nothing, and if
+ * one side runs out of cells first, that side is the whole piece cut off and decides whether the wall may stay. The
+ * cost is the size of the smaller side rather than of the board, and a full flood fill is only needed for a cut-off
+ * piece that touches the far right column but holds neither the start nor a prize.
+ * <P>
+ * An instance keeps its buffers between boards, so one engine can generate many boards without allocating.
+ *
+ * @version 1.0
+ */
+class SolvableWalls
+{
+  // attempts per missing wall when topping the wall count back up
+  private static final int ATTEMPTS_PER_WALL = 8;
+
+  private int[] parent = new int[0];
+  private int[] seen = new int[0];
+  private int[] queue = new int[0];
+  private int[] otherQueue = new int[0];
+  private int mark;
+
+  /**
+   * Remove and replace walls until the board is solvable.
+   * <P>
+   * precondition: placed lists the walls in the order they were added, each encoded as cell * 2 for a vertical
+   * wall or cell * 2 + 1 for a horizontal wall, with no wall listed twice
+   * <P>
+   * @param board board whose walls, traps, and prizes have been placed
+   * @param placed walls in placement order
+   * @param count number of entries in placed
+   * @param rand generator for replacement walls
+   * @param target number of walls wanted on the board
+   */
+  void repair(Board board, int[] placed, int count, SplittableRandom rand, int target)
+  {
+    int cells = board.getCellCount();
+    if (parent.length < cells)
+    {
+      parent = new int[cells];
+      seen = new int[cells];
+      queue = new int[cells];
+      otherQueue = new int[cells];
+    }
+
+    // union every open edge
+    for (int c = 0; c < cells; c++)
+      parent[c] = c;
+    int cols = board.getCols();
+    for (int c = 0; c < cells; c++)
+    {
+      if (board.colOf(c) < cols - 1 && !board.hasVerticalWall(c))
+        union(c, c + 1);
+      if (c + cols < cells && !board.hasHorizontalWall(c))
+        union(c, c + cols);
+    }
+
+    // take walls back down, newest first, until start, exit, and prizes are connected
+    while (count > 0 && !connected(board))
+    {
+      int wall = placed[--count];
+      int c = wall >> 1;
+      if ((wall & 1) == 0)
+      {
+        board.removeVerticalWall(c);
+        if (board.colOf(c) < cols - 1)
+          union(c, c + 1);
+      }
+      else
+      {
+        board.removeHorizontalWall(c);
+        if (c + cols < cells)
+          union(c, c + cols);
+      }
+    }
+
+    // top the wall count back up with walls that keep the board solvable
+    int prizes = 0;
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      prizes++;
+    for (int attempts = (target - count) * ATTEMPTS_PER_WALL; count < target && attempts > 0; attempts--)
+    {
+      int c = board.cell(rand.nextInt(cols), rand.nextInt(board.getRows()));
+      boolean vertical = rand.nextInt(2) == 0;
+      if (vertical ? board.hasVerticalWall(c) : board.hasHorizontalWall(c))
+        continue;
+
+      // the cell on the other side of the wall, or -1 for a wall on the outside edge, which cuts nothing
+      int other = vertical ? (board.colOf(c) < cols - 1 ? c + 1 : -1) : (c + cols < cells ? c + cols : -1);
+      if (vertical)
+        board.addVerticalWall(c);
+      else
+        board.addHorizontalWall(c);
+
+      if (other < 0 || stillSolvable(board, c, other, prizes))
+      {
+        count++;
+      }
+      else if (vertical)
+      {
+        board.removeVerticalWall(c);
+      }
+      else
+      {
+        board.removeHorizontalWall(c);
+      }
+    }
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * Union-find check: the start shares a set with some far right cell and with every prize.
+   */
+  private boolean connected(Board board)
+  {
+    int start = find(0);
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      if (find(c) != start)
+        return false;
+    int lastCol = board.getCols() - 1;
+    for (int r = 0; r < board.getRows(); r++)
+      if (find(board.cell(lastCol, r)) == start)
+        return true;
+    return false;
+  }
+
+  /*
+   * Check a solvable board is still solvable after a wall went up between cells a and b. Searches from a and b in
+   * turn, one cell each, until they meet (the wall cut nothing) or one runs out of cells, which leaves that side's
+   * piece in its queue.
+   */
+  private boolean stillSolvable(Board board, int a, int b, int prizes)
+  {
+    int markA = nextMark();
+    int markB = nextMark();
+    seen[a] = markA;
+    seen[b] = markB;
+    queue[0] = a;
+    otherQueue[0] = b;
+    int headA = 0;
+    int sizeA = 1;
+    int headB = 0;
+    int sizeB = 1;
+    while (headA < sizeA && headB < sizeB)
+    {
+      sizeA = expand(board, queue, queue[headA++], sizeA, markA, markB);
+      if (sizeA < 0)
+        return true;
+      sizeB = expand(board, otherQueue, otherQueue[headB++], sizeB, markB, markA);
+      if (sizeB < 0)
+        return true;
+    }
+
+    // one side is cut off from the other: look at what it holds
+    int[] piece = headA == sizeA ? queue : otherQueue;
+    int size = headA == sizeA ? sizeA : sizeB;
+    int lastCol = board.getCols() - 1;
+    boolean start = false;
+    boolean exit = false;
+    int cutPrizes = 0;
+    for (int i = 0; i < size; i++)
+    {
+      int c = piece[i];
+      start |= c == 0;
+      exit |= board.colOf(c) == lastCol;
+      if (board.hasInitialPrize(c))
+        cutPrizes++;
+    }
+    if (start)
+      return exit && cutPrizes == prizes;
+    if (cutPrizes > 0)
+      return false;
+    // the start kept its side, but whether that side still reaches the far right column takes a full search
+    return !exit || reachable(board);
+  }
+
+  /*
+   * Queue the open neighbours of cell c not yet seen by this search; returns the new queue size, or -1 if a
+   * neighbour has been seen by the search from the other side
+   */
+  private int expand(Board board, int[] q, int c, int size, int own, int other)
+  {
+    int cols = board.getCols();
+    int cells = board.getCellCount();
+    int col = board.colOf(c);
+    if (col < cols - 1 && !board.hasVerticalWall(c))
+      size = visit(q, c + 1, size, own, other);
+    if (size >= 0 && col > 0 && !board.hasVerticalWall(c - 1))
+      size = visit(q, c - 1, size, own, other);
+    if (size >= 0 && c + cols < cells && !board.hasHorizontalWall(c))
+      size = visit(q, c + cols, size, own, other);
+    if (size >= 0 && c >= cols && !board.hasHorizontalWall(c - cols))
+      size = visit(q, c - cols, size, own, other);
+    return size;
+  }
+
+  private int visit(int[] q, int c, int size, int own, int other)
+  {
+    if (seen[c] == other)
+      return -1;
+    if (seen[c] != own)
+    {
+      seen[c] = own;
+      q[size++] = c;
+    }
+    return size;
+  }
+
+  /*
+   * Flood fill check from the start, for the cases the search around a new wall can't settle on its own.
+   */
+  private boolean reachable(Board board)
+  {
+    int flood = nextMark();
+    int cols = board.getCols();
+    int cells = board.getCellCount();
+    int size = 0;
+    queue[size++] = 0;
+    seen[0] = flood;
+    for (int head = 0; head < size; head++)
+    {
+      int c = queue[head];
+      int col = board.colOf(c);
+      if (col < cols - 1 && !board.hasVerticalWall(c) && seen[c + 1] != flood)
+      {
+        seen[c + 1] = flood;
+        queue[size++] = c + 1;
+      }
+      if (col > 0 && !board.hasVerticalWall(c - 1) && seen[c - 1] != flood)
+      {
+        seen[c - 1] = flood;
+        queue[size++] = c - 1;
+      }
+      if (c + cols < cells && !board.hasHorizontalWall(c) && seen[c + cols] != flood)
+      {
+        seen[c + cols] = flood;
+        queue[size++] = c + cols;
+      }
+      if (c >= cols && !board.hasHorizontalWall(c - cols) && seen[c - cols] != flood)
+      {
+        seen[c - cols] = flood;
+        queue[size++] = c - cols;
+      }
+    }
+
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      if (seen[c] != flood)
+        return false;
+    int lastCol = cols - 1;
+    for (int r = 0; r < board.getRows(); r++)
+      if (seen[board.cell(lastCol, r)] == flood)
+        return true;
+    return false;
+  }
+
+  /*
+   * A value no cell of seen holds yet, clearing seen when the counter wraps
+   */
+  private int nextMark()
+  {
+    if (++mark <= 0)
+    {
+      Arrays.fill(seen, 0);
+      mark = 1;
+    }
+    return mark;
+  }
+
+  private int find(int c)
+  {
+    while (parent[c] != c)
+    {
+      // path halving
+      parent[c] = parent[parent[c]];
+      c = parent[c];
+    }
+    return c;
+  }
+
+  private void union(int a, int b)
+  {
+    a = find(a);
+    b = find(b);
+    if (a != b)
+      parent[a] = b;
+  }
+}
@@ -4,10 +4,23 @@
  * @author GShorr, PLTW
  * @version 4/16/2019
  */
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
 
  public class UserInput
 {
+    // one reader for the whole run: a new reader per line would drop whatever
+    // it had already buffered, which loses commands piped in from a script
+    private static final BufferedReader IN = new BufferedReader(new InputStreamReader(System.in));
+    // time to parse each line is recorded here when set
+    private static volatile GameMetrics metrics;
+
     /**
      * Verifies that one of the string array provided as an argument will be
      * returned. 
@@ -30,10 +43,13 @@ import java.util.Scanner;
         boolean valid = false;
         do
         {
-            input = getLine().toLowerCase();
+            input = getLine();
+            if(input == null)
+                throw new NoSuchElementException("No line found");
+            input = input.toLowerCase();
             for(String str : validInputs)
             {
-                if(input.equals(str.toLowerCase()))
+                if(input.equalsIgnoreCase(str))
                     valid = true;
             }
             if(!valid)
@@ -43,10 +59,88 @@ import java.util.Scanner;
         return input;
     }
     
+    /**
+     * Reads lines until the user enters one or more valid game commands,
+     * separated by spaces (for example "r r jd p jr").
+     * <P>
+     * Commands are looked up in Command's alias table, ignoring case. If
+     * input ends (for example, the end of a piped script), QUIT is returned
+     * so the game finishes normally.
+     * <P>
+     * @return the commands the user entered, in order
+     */
+    public static List<Command> getCommands()
+    {
+        while(true)
+        {
+            String input = getLine();
+            if(input == null)
+                return Collections.singletonList(Command.QUIT);
+            GameMetrics m = metrics;
+            long start = m != null ? System.nanoTime() : 0;
+            List<Command> commands = parseCommands(input);
+            if(m != null)
+                m.recordParse(System.nanoTime() - start);
+            if(commands != null && !commands.isEmpty())
+                return commands;
+            System.out.print("Invalid input. Please try again\n>");
+        }
+    }
+
+    /**
+     * Splits a line into game commands at whitespace.
+     * <P>
+     * @param line the text to parse
+     * @return the commands in order, or null if any word is not a command
+     */
+    public static List<Command> parseCommands(String line)
+    {
+        List<Command> commands = new ArrayList<Command>();
+        int end = line.length();
+        int i = 0;
+        while(i < end)
+        {
+            while(i < end && Character.isWhitespace(line.charAt(i)))
+                i++;
+            int start = i;
+            while(i < end && !Character.isWhitespace(line.charAt(i)))
+                i++;
+            if(i > start)
+            {
+                Command c = Command.forAlias(line.substring(start, i));
+                if(c == null)
+                    return null;
+                commands.add(c);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Times how long getCommands() takes to parse each line.
+     * <P>
+     * @param m where to record parse times, or null to stop timing
+     */
+    public static void setMetrics(GameMetrics m)
+    {
+        metrics = m;
+    }
+
+    /**
+     * Reads one line of console input.
+     * <P>
+     * @return the line, or null if input has ended
+     */
     public static String getLine()
     {
-        Scanner s = new Scanner(System.in);
-        return s.nextLine();
+        try
+        {
+            return IN.readLine();
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
     }
 
 
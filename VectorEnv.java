@@ -0,0 +1,445 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Many games stepped together, for training movement bots.
+ * <P>
+ * The state of every game is kept struct-of-arrays in primitive arrays: one int per game for the player location,
+ * score, steps, and coins, and one run of bitmask words per game for traps, prizes, and wall edges, laid out the
+ * same way as Board. step() applies one action to every game with the same rules as GameEngine.movePlayerByCells
+ * and pickupPrize, and writes each game's reward and whether its episode ended into arrays supplied by the caller.
+ * Large batches are split into chunks stepped in parallel on the common fork/join pool. Stepping allocates nothing.
+ * <P>
+ * Actions are the ordinals of the Command values RIGHT through PICKUP. An episode ends when the player reaches the
+ * far right column (reward + end value) or has taken maxSteps actions (reward - end value), as if endGame() were
+ * called; the game then restarts on the same board, as replay() does. Every action counts toward maxSteps, pickups
+ * included, although like GameEngine only moves count as steps. reset() deals new boards.
+ * <P>
+ * bench/VectorEnvCheck steps a VectorEnv in lockstep with a GameEngine per game and fails on any difference, so
+ * this copy of the rules can't drift from GameEngine unnoticed.
+ * <P>
+ * A VectorEnv may be stepped by one thread at a time.
+ *
+ * @version 1.0
+ */
+public class VectorEnv
+{
+  /** Number of actions; action a is Command.values()[a]. */
+  public static final int NUM_ACTIONS = Command.PICKUP.ordinal() + 1;
+  // smallest number of games worth handing to another core
+  private static final int CHUNK_SIZE = 4096;
+
+  private static final int[] ACTION_X = new int[NUM_ACTIONS];
+  private static final int[] ACTION_Y = new int[NUM_ACTIONS];
+  static
+  {
+    for (int a = 0; a < NUM_ACTIONS; a++)
+    {
+      ACTION_X[a] = Command.values()[a].getCellsX();
+      ACTION_Y[a] = Command.values()[a].getCellsY();
+    }
+  }
+
+  private final int envs;
+  private final int cols;
+  private final int rows;
+  private final int words;
+  private final int[] config;
+  private final boolean solvable;
+  private final int maxSteps;
+
+  // scores, as in GameEngine
+  private final int prizeVal;
+  private final int trapVal;
+  private final int endVal;
+  private final int offGridVal;
+  private final int hitWallVal;
+
+  // one entry per game
+  private final int[] playerCol;
+  private final int[] playerRow;
+  private final int[] score;
+  private final int[] steps;
+  private final int[] coins;
+  // actions taken in the current episode, moves and pickups alike
+  private final int[] actionCount;
+
+  // words entries per game, game i starting at i * words
+  private final long[] traps;
+  private final long[] prizes;
+  private final long[] vWalls;
+  private final long[] hWalls;
+  private final long[] initialTraps;
+  private final long[] initialPrizes;
+
+  private final Chunk[] chunks;
+  // arguments of the step in progress, read by the chunks
+  private int[] stepActions;
+  private int[] stepRewards;
+  private boolean[] stepDones;
+
+  /*
+   * A range of games stepped on one core. Chunks are reused from step to step.
+   */
+  private class Chunk extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+
+    Chunk(int from, int to)
+    {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      stepRange(from, to);
+    }
+  }
+
+  /**
+   * Create a set of games. Call reset() to deal the first boards.
+   * <P>
+   * precondition: envs, cols, rows, and maxSteps are positive
+   * <P>
+   * @throws IllegalArgumentException if the games' boards together need more than 2^31 - 1 bitmask words
+   * @param envs number of games
+   * @param cols number of cells across each board
+   * @param rows number of cells down each board
+   * @param config {walls, traps, prizes} for each board
+   * @param solvable true to deal only solvable boards
+   * @param maxSteps actions after which an episode ends without reaching the far right column
+   */
+  public VectorEnv(int envs, int cols, int rows, int[] config, boolean solvable, int maxSteps)
+  {
+    // every game's words are indexed with an int, e * words
+    long boardWords = ((long)cols * rows + 63) >>> 6;
+    if ((long)cols * rows > Integer.MAX_VALUE || boardWords * envs > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(envs + " games of " + cols + "x" + rows + " are too many to hold");
+    this.envs = envs;
+    this.cols = cols;
+    this.rows = rows;
+    this.words = (int)boardWords;
+    this.config = config.clone();
+    this.solvable = solvable;
+    this.maxSteps = maxSteps;
+
+    GameEngine rules = new GameEngine(cols, rows);
+    prizeVal = rules.getPrizeVal();
+    trapVal = rules.getTrapVal();
+    endVal = rules.getEndVal();
+    offGridVal = rules.getOffGridVal();
+    hitWallVal = rules.getHitWallVal();
+
+    playerCol = new int[envs];
+    playerRow = new int[envs];
+    score = new int[envs];
+    steps = new int[envs];
+    coins = new int[envs];
+    actionCount = new int[envs];
+    traps = new long[envs * words];
+    prizes = new long[envs * words];
+    vWalls = new long[envs * words];
+    hWalls = new long[envs * words];
+    initialTraps = new long[envs * words];
+    initialPrizes = new long[envs * words];
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    int count = Math.max(1, Math.min(cores * 4, envs / CHUNK_SIZE));
+    chunks = new Chunk[count];
+    for (int i = 0; i < count; i++)
+      chunks[i] = new Chunk((int)((long)envs * i / count), (int)((long)envs * (i + 1) / count));
+  }
+
+  /**
+   * Deal a new board to every game and restart all episodes. Game i gets the board generated from
+   * BoardAnalyzer.boardSeed(seed, i), so it can be recreated with GameEngine.createBoard(long).
+   * <P>
+   * @param seed base seed
+   */
+  public void reset(final long seed)
+  {
+    final ThreadLocal<GameEngine> engines = ThreadLocal.withInitial(() -> {
+      GameEngine e = new GameEngine(cols, rows);
+      e.setSolvable(solvable);
+      e.setWalls(config[0]);
+      e.setTraps(config[1]);
+      e.setPrizes(config[2]);
+      return e;
+    });
+    IntStream.range(0, envs).parallel().forEach(i -> {
+      GameEngine e = engines.get();
+      e.createBoard(BoardAnalyzer.boardSeed(seed, i));
+      load(i, e.getBoard());
+    });
+  }
+
+  /**
+   * Apply one action to every game.
+   * <P>
+   * precondition: each array has one entry per game, and every action is between 0 and NUM_ACTIONS - 1
+   * postcondition: games whose episode ended have restarted on the same board
+   * <P>
+   * @param actions action for each game
+   * @param rewards receives the score change of each game, including the end of episode score
+   * @param dones receives true for each game whose episode ended
+   */
+  public void step(int[] actions, int[] rewards, boolean[] dones)
+  {
+    stepActions = actions;
+    stepRewards = rewards;
+    stepDones = dones;
+    try {
+      if (chunks.length == 1)
+      {
+        stepRange(0, envs);
+      }
+      else
+      {
+        for (Chunk c : chunks)
+          c.reinitialize();
+        ForkJoinTask.invokeAll(chunks);
+      }
+    } finally {
+      stepActions = null;
+      stepRewards = null;
+      stepDones = null;
+    }
+  }
+
+  public int getEnvCount()
+  {
+    return envs;
+  }
+
+  public int getCols()
+  {
+    return cols;
+  }
+
+  public int getRows()
+  {
+    return rows;
+  }
+
+  /**
+   * Return the player column of every game. The array is live and must not be modified.
+   */
+  public int[] getPlayerCols()
+  {
+    return playerCol;
+  }
+
+  /**
+   * Return the player row of every game. The array is live and must not be modified.
+   */
+  public int[] getPlayerRows()
+  {
+    return playerRow;
+  }
+
+  /**
+   * Return the score of every game's current episode. The array is live and must not be modified.
+   */
+  public int[] getScores()
+  {
+    return score;
+  }
+
+  /**
+   * Return the steps taken in every game's current episode. The array is live and must not be modified.
+   */
+  public int[] getSteps()
+  {
+    return steps;
+  }
+
+  /**
+   * Return the prizes picked up in every game's current episode. The array is live and must not be modified.
+   */
+  public int[] getCoinsCollected()
+  {
+    return coins;
+  }
+
+  public boolean hasTrap(int env, int cell)
+  {
+    return get(traps, env * words, cell);
+  }
+
+  public boolean hasPrize(int env, int cell)
+  {
+    return get(prizes, env * words, cell);
+  }
+
+  public boolean hasVerticalWall(int env, int cell)
+  {
+    return get(vWalls, env * words, cell);
+  }
+
+  public boolean hasHorizontalWall(int env, int cell)
+  {
+    return get(hWalls, env * words, cell);
+  }
+
+  /*------------------- private methods -------------------*/
+
+  private void stepRange(int from, int to)
+  {
+    int[] actions = stepActions;
+    int[] rewards = stepRewards;
+    boolean[] dones = stepDones;
+    for (int e = from; e < to; e++)
+    {
+      int a = actions[e];
+      if (a < 0 || a >= NUM_ACTIONS)
+        throw new IllegalArgumentException("game " + e + ": no action " + a);
+      int base = e * words;
+      int col = playerCol[e];
+      int row = playerRow[e];
+      int reward;
+
+      actionCount[e]++;
+      if (a == Command.PICKUP.ordinal())
+      {
+        if (clear(prizes, base, row * cols + col))
+        {
+          coins[e]++;
+          reward = prizeVal;
+        }
+        else
+        {
+          reward = -prizeVal;
+        }
+      }
+      else
+      {
+        // same order of checks as GameEngine.movePlayerByCells
+        steps[e]++;
+        int dx = ACTION_X[a];
+        int dy = ACTION_Y[a];
+        int newCol = col + dx;
+        int newRow = row + dy;
+        if (newCol < 0 || newCol >= cols || newRow < 0 || newRow >= rows)
+        {
+          reward = -offGridVal;
+        }
+        else if (isBlocked(base, row * cols + col, dx, dy))
+        {
+          reward = -hitWallVal;
+        }
+        else
+        {
+          playerCol[e] = newCol;
+          playerRow[e] = newRow;
+          int cell = newRow * cols + newCol;
+          reward = 0;
+          if (clear(traps, base, cell))
+          {
+            reward += trapVal;
+          }
+          else if (clear(prizes, base, cell))
+          {
+            coins[e]++;
+            reward += prizeVal;
+          }
+        }
+      }
+
+      boolean done = true;
+      if (playerCol[e] == cols - 1)
+        reward += endVal;
+      else if (actionCount[e] >= maxSteps)
+        reward -= endVal;
+      else
+        done = false;
+
+      rewards[e] = reward;
+      dones[e] = done;
+      if (done)
+        restart(e);
+      else
+        score[e] += reward;
+    }
+  }
+
+  /*
+   * Same as Board.isBlocked, on game e's wall words.
+   */
+  private boolean isBlocked(int base, int cell, int dCol, int dRow)
+  {
+    for (int i = 0; i < dCol; i++)
+      if (get(vWalls, base, cell + i)) return true;
+    for (int i = -1; i >= dCol; i--)
+      if (get(vWalls, base, cell + i)) return true;
+    for (int i = 0; i < dRow; i++)
+      if (get(hWalls, base, cell + i * cols)) return true;
+    for (int i = -1; i >= dRow; i--)
+      if (get(hWalls, base, cell + i * cols)) return true;
+    return false;
+  }
+
+  /*
+   * Copy a generated board into game e and restart its episode.
+   */
+  private void load(int e, Board board)
+  {
+    int base = e * words;
+    for (int w = base; w < base + words; w++)
+    {
+      vWalls[w] = 0;
+      hWalls[w] = 0;
+      initialTraps[w] = 0;
+      initialPrizes[w] = 0;
+    }
+    for (int c = board.nextVerticalWall(0); c >= 0; c = board.nextVerticalWall(c + 1))
+      set(vWalls, base, c);
+    for (int c = board.nextHorizontalWall(0); c >= 0; c = board.nextHorizontalWall(c + 1))
+      set(hWalls, base, c);
+    for (int c = board.nextInitialTrap(0); c >= 0; c = board.nextInitialTrap(c + 1))
+      set(initialTraps, base, c);
+    for (int c = board.nextInitialPrize(0); c >= 0; c = board.nextInitialPrize(c + 1))
+      set(initialPrizes, base, c);
+    restart(e);
+  }
+
+  /*
+   * Put the traps and prizes back and the player at the start, as replay() does.
+   */
+  private void restart(int e)
+  {
+    int base = e * words;
+    System.arraycopy(initialTraps, base, traps, base, words);
+    System.arraycopy(initialPrizes, base, prizes, base, words);
+    playerCol[e] = 0;
+    playerRow[e] = 0;
+    score[e] = 0;
+    steps[e] = 0;
+    coins[e] = 0;
+    actionCount[e] = 0;
+  }
+
+  private static void set(long[] bits, int base, int i)
+  {
+    bits[base + (i >>> 6)] |= 1L << i;
+  }
+
+  private static boolean get(long[] bits, int base, int i)
+  {
+    return (bits[base + (i >>> 6)] & (1L << i)) != 0;
+  }
+
+  private static boolean clear(long[] bits, int base, int i)
+  {
+    long mask = 1L << i;
+    int w = base + (i >>> 6);
+    boolean was = (bits[w] & mask) != 0;
+    bits[w] &= ~mask;
+    return was;
+  }
+}
@@ -0,0 +1,248 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Microbenchmarks for the game hot paths: movePlayer, createBoard (plain and solvable), pickupPrize, and
+ * paintComponent.
+ * <P>
+ * Every benchmark runs once for each board size and wall/trap/prize configuration. Each run is warmed up for a
+ * few iterations and then measured over several timed iterations, reporting the mean time per operation. Solvable
+ * board generation is also timed on its own on a large board at the default density, one board at a time.
+ * Paint benchmarks draw into an offscreen BufferedImage, so the harness runs headless.
+ * <P>
+ * Usage: java -cp out GameBench [--warmup n] [--iterations n] [--time ms] [--filter name]
+ *
+ * @version 1.0
+ */
+public class GameBench
+{
+  // board sizes, as {cols, rows}
+  private static final int[][] SIZES = { {8, 5}, {32, 20}, {128, 80} };
+  // board configurations, as {walls, traps, prizes}
+  private static final int[][] CONFIGS = { {20, 5, 3}, {80, 20, 12}, {320, 80, 48} };
+  // large board for solvable generation, with walls, traps, and prizes at the default board's density as --size sets
+  private static final int[] LARGE_SIZE = { 200, 120 };
+  private static final int[] LARGE_CONFIG = { 20 * 200 * 120 / 40, 5 * 200 * 120 / 40, 3 * 200 * 120 / 40 };
+
+  // results are folded into this field so the JIT cannot discard the work being measured
+  static volatile int sink;
+
+  /**
+   * One benchmarked operation, bound to the state it was set up with.
+   */
+  interface Op
+  {
+    int run();
+  }
+
+  public static void main(String[] args)
+  {
+    int warmup = 3;
+    int iterations = 5;
+    long timeMs = 500;
+    String filter = "";
+    for (int i = 0; i < args.length - 1; i += 2)
+    {
+      switch (args[i])
+      {
+        case "--warmup": warmup = Integer.parseInt(args[i + 1]); break;
+        case "--iterations": iterations = Integer.parseInt(args[i + 1]); break;
+        case "--time": timeMs = Long.parseLong(args[i + 1]); break;
+        case "--filter": filter = args[i + 1]; break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          return;
+      }
+    }
+
+    System.setProperty("java.awt.headless", "true");
+    // no event listeners are registered, so the engine does no console I/O during the measurements
+    System.out.printf("%-16s %9s %16s %14s %12s%n", "benchmark", "size", "w/t/p", "ns/op", "+/-");
+    for (int[] size : SIZES)
+    {
+      for (int[] config : CONFIGS)
+      {
+        List<String> names = new ArrayList<String>();
+        List<Op> ops = new ArrayList<Op>();
+        names.add("movePlayer");     ops.add(movePlayer(size, config));
+        names.add("createBoard");    ops.add(createBoard(size, config, false));
+        names.add("createSolvable"); ops.add(createBoard(size, config, true));
+        names.add("pickupPrize");    ops.add(pickupPrize(size, config));
+        names.add("paintComponent"); ops.add(paintComponent(size, config));
+
+        for (int i = 0; i < ops.size(); i++)
+        {
+          if (!names.get(i).contains(filter))
+            continue;
+          double[] r = measure(ops.get(i), warmup, iterations, timeMs);
+          System.out.printf("%-16s %9s %16s %14.1f %12.1f%n", names.get(i), size[0] + "x" + size[1],
+                     config[0] + "/" + config[1] + "/" + config[2], r[0], r[1]);
+        }
+      }
+    }
+
+    // tens of milliseconds a board, too slow for batches of 64
+    if ("createSolvable".contains(filter))
+    {
+      double[] r = measureEach(createBoard(LARGE_SIZE, LARGE_CONFIG, true), warmup, iterations * 2);
+      System.out.printf("%-16s %9s %16s %14.1f %12.1f%n", "createSolvable", LARGE_SIZE[0] + "x" + LARGE_SIZE[1],
+                        LARGE_CONFIG[0] + "/" + LARGE_CONFIG[1] + "/" + LARGE_CONFIG[2], r[0], r[1]);
+    }
+  }
+
+  /*------------------- benchmarks -------------------*/
+
+  /*
+   * Walk the player around a loop of single steps and jumps; traps and prizes are restored every lap so the
+   * trap and prize paths stay hot.
+   */
+  private static Op movePlayer(int[] size, int[] config)
+  {
+    final GameEngine engine = newEngine(size, config);
+    final int s = GameEngine.SPACE_SIZE;
+    final int[][] lap = { {s, 0}, {2*s, 0}, {0, s}, {0, 2*s}, {-s, 0}, {-2*s, 0}, {0, -s}, {0, -2*s} };
+    return new Op() {
+      int i;
+      public int run()
+      {
+        int[] m = lap[i++ & 7];
+        if ((i & 7) == 0)
+          engine.getBoard().resetItems();
+        return engine.movePlayer(m[0], m[1]);
+      }
+    };
+  }
+
+  private static Op createBoard(int[] size, int[] config, boolean solvable)
+  {
+    final GameEngine engine = newEngine(size, config);
+    engine.setSolvable(solvable);
+    return new Op() {
+      public int run()
+      {
+        engine.createBoard();
+        return engine.getRemainingWalls();
+      }
+    };
+  }
+
+  /*
+   * Pick up a prize from the player's cell, restoring it first so every pickup succeeds.
+   */
+  private static Op pickupPrize(int[] size, int[] config)
+  {
+    final GameEngine engine = newEngine(size, config);
+    final Board board = engine.getBoard();
+    final int cell = board.cell(engine.getPlayerCol(), engine.getPlayerRow());
+    return new Op() {
+      public int run()
+      {
+        board.addPrize(cell);
+        return engine.pickupPrize();
+      }
+    };
+  }
+
+  private static Op paintComponent(int[] size, int[] config)
+  {
+    final GameEngine engine = newEngine(size, config);
+    final GameGUI gui = new GameGUI(engine);
+    // board plus the sidebar, matching the window layout
+    int s = GameEngine.SPACE_SIZE;
+    BufferedImage image = new BufferedImage(size[0] * s + 230, size[1] * s + 60, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = image.createGraphics();
+    return new Op() {
+      public int run()
+      {
+        gui.paintComponent(g);
+        return engine.getScore();
+      }
+    };
+  }
+
+  /*------------------- harness -------------------*/
+
+  private static GameEngine newEngine(int[] size, int[] config)
+  {
+    GameEngine engine = new GameEngine(size[0], size[1]);
+    engine.setWalls(config[0]);
+    engine.setTraps(config[1]);
+    engine.setPrizes(config[2]);
+    engine.createBoard();
+    return engine;
+  }
+
+  /*
+   * Run warmup iterations, then timed iterations of timeMs each.
+   * Returns {mean ns/op, standard deviation of ns/op across iterations}.
+   */
+  private static double[] measure(Op op, int warmup, int iterations, long timeMs)
+  {
+    for (int i = 0; i < warmup; i++)
+      iteration(op, timeMs);
+
+    double[] nsPerOp = new double[iterations];
+    double sum = 0;
+    for (int i = 0; i < iterations; i++)
+    {
+      nsPerOp[i] = iteration(op, timeMs);
+      sum += nsPerOp[i];
+    }
+    double mean = sum / iterations;
+    double var = 0;
+    for (double v : nsPerOp)
+      var += (v - mean) * (v - mean);
+    return new double[] { mean, Math.sqrt(var / iterations) };
+  }
+
+  /*
+   * Run warmup ops, then time each of runs ops on its own, for ops too slow to batch.
+   * Returns {mean ns/op, standard deviation of ns/op across runs}.
+   */
+  private static double[] measureEach(Op op, int warmup, int runs)
+  {
+    int acc = 0;
+    for (int i = 0; i < warmup; i++)
+      acc += op.run();
+
+    double[] ns = new double[runs];
+    double sum = 0;
+    for (int i = 0; i < runs; i++)
+    {
+      long start = System.nanoTime();
+      acc += op.run();
+      ns[i] = System.nanoTime() - start;
+      sum += ns[i];
+    }
+    sink = acc;
+    double mean = sum / runs;
+    double var = 0;
+    for (double v : ns)
+      var += (v - mean) * (v - mean);
+    return new double[] { mean, Math.sqrt(var / runs) };
+  }
+
+  /*
+   * Run the op in batches until timeMs has elapsed, returning ns per op.
+   */
+  private static double iteration(Op op, long timeMs)
+  {
+    long deadline = System.nanoTime() + timeMs * 1000000L;
+    long ops = 0;
+    int acc = 0;
+    long start = System.nanoTime();
+    long now;
+    do
+    {
+      for (int i = 0; i < 64; i++)
+        acc += op.run();
+      ops += 64;
+      now = System.nanoTime();
+    }
+    while (now < deadline);
+    sink = acc;
+    return (double)(now - start) / ops;
+  }
+}
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Check for GameHistory: plays random sessions through a history, including replays, undos, and redos, and checks
+ * that stateAt() rebuilds exactly the state the engine was in at every position, without changing the engine, and
+ * that seek() moves the engine back and lets the session branch. Then measures how long a rebuild takes in a long
+ * session.
+ * <P>
+ * Any difference is reported and the check exits with status 1.
+ * <P>
+ * Usage: java -cp out HistoryCheck [--sessions n] [--commands n] [--interval n] [--seed n]
+ *
+ * @version 1.0
+ */
+public class HistoryCheck
+{
+  // board sizes and {walls, traps, prizes} configurations cycled through
+  private static final int[][] SIZES = { {8, 5}, {16, 10}, {32, 20} };
+  private static final int[][] CONFIGS = { {20, 5, 3}, {80, 20, 12}, {320, 80, 48} };
+
+  // results are folded into this field so the JIT cannot discard the work being measured
+  static volatile int sink;
+
+  public static void main(String[] args)
+  {
+    int sessions = 30;
+    int commands = 2000;
+    int interval = GameHistory.DEFAULT_INTERVAL;
+    long seed = 1;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--sessions": sessions = Integer.parseInt(args[++i]); break;
+        case "--commands": commands = Integer.parseInt(args[++i]); break;
+        case "--interval": interval = Integer.parseInt(args[++i]); break;
+        case "--seed": seed = Long.parseLong(args[++i]); break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    for (int s = 0; s < sessions; s++)
+    {
+      String failure = checkSession(SIZES[s % SIZES.length], CONFIGS[s % CONFIGS.length], commands, interval,
+                                    seed + s);
+      if (failure != null)
+      {
+        System.out.println("FAIL session " + s + ": " + failure);
+        System.exit(1);
+      }
+    }
+    System.out.println("ok   " + sessions + " sessions x " + commands + " commands, interval " + interval);
+    measure(1000000, interval, seed);
+  }
+
+  /*------------------- harness -------------------*/
+
+  /*
+   * Play one session, then check every position and a seek; null if all is well, else what went wrong
+   */
+  private static String checkSession(int[] size, int[] config, int commands, int interval, long seed)
+  {
+    GameEngine engine = newEngine(size, config, seed);
+    GameMetrics metrics = new GameMetrics();
+    engine.setMetrics(metrics);
+    GameHistory history = new GameHistory(engine, interval);
+    SplittableRandom rand = new SplittableRandom(seed);
+    List<GameState> expected = new ArrayList<GameState>();
+    expected.add(engine.saveState());
+    for (int i = 0; i < commands; i++)
+    {
+      history.apply(randomCommand(rand));
+      expected.add(engine.saveState());
+    }
+
+    // rebuilding must not disturb the engine in any way a renderer, listener, or metrics reader would see
+    engine.clearDamage();
+    engine.consumeReplayedFlag();
+    GameState now = engine.saveState();
+    int version = engine.getBoardVersion();
+    long commandEvents = 0;
+    for (GameEvent.Type t : GameEvent.Type.values())
+      commandEvents += metrics.getEventCount(t);
+    for (int n = 0; n <= commands; n++)
+    {
+      if (!history.stateAt(n).equals(expected.get(n)))
+        return "stateAt(" + n + ") differs from the state after " + n + " commands";
+    }
+    long eventsAfter = 0;
+    for (GameEvent.Type t : GameEvent.Type.values())
+      eventsAfter += metrics.getEventCount(t);
+    if (!engine.saveState().equals(now) || engine.getBoardVersion() != version || engine.consumeReplayedFlag()
+        || engine.isFullyDirty() || engine.getDirtyCellCount() != 0 || engine.getDirtyFields() != 0
+        || eventsAfter != commandEvents)
+      return "stateAt() changed the engine";
+
+    // seek back, branch, and check the new branch is recorded like any other
+    int back = rand.nextInt(commands + 1);
+    history.seek(back);
+    if (!engine.saveState().equals(expected.get(back)) || history.size() != back)
+      return "seek(" + back + ") left the engine in the wrong state";
+    for (int i = 0; i < 100; i++)
+    {
+      history.apply(randomCommand(rand));
+      GameState s = engine.saveState();
+      if (!history.stateAt(history.size()).equals(s) || !engine.saveState().equals(s))
+        return "branch after seek(" + back + ") differs at " + history.size();
+    }
+    return null;
+  }
+
+  /*
+   * Time stateAt() at random positions of a long session
+   */
+  private static void measure(int commands, int interval, long seed)
+  {
+    GameEngine engine = newEngine(SIZES[1], CONFIGS[1], seed);
+    GameHistory history = new GameHistory(engine, interval);
+    SplittableRandom rand = new SplittableRandom(seed);
+    for (int i = 0; i < commands; i++)
+      history.apply(randomCommand(rand));
+
+    int lookups = 0;
+    long start = System.nanoTime();
+    long end = start + 1000000000L;
+    long now;
+    while ((now = System.nanoTime()) < end || lookups < 1000)
+    {
+      sink += history.stateAt(rand.nextInt(commands + 1)).getScore();
+      lookups++;
+    }
+    System.out.printf("stateAt in a %d-command session: %.2f us%n", commands, (now - start) / 1e3 / lookups);
+  }
+
+  private static GameEngine newEngine(int[] size, int[] config, long seed)
+  {
+    GameEngine engine = new GameEngine(size[0], size[1]);
+    engine.setWalls(config[0]);
+    engine.setTraps(config[1]);
+    engine.setPrizes(config[2]);
+    engine.createBoard(seed);
+    engine.replay();
+    return engine;
+  }
+
+  /*
+   * Mostly moves and pickups, with the occasional replay, undo, and redo
+   */
+  private static Command randomCommand(SplittableRandom rand)
+  {
+    int r = rand.nextInt(100);
+    if (r < 2)
+      return Command.REPLAY;
+    if (r < 7)
+      return Command.UNDO;
+    if (r < 10)
+      return Command.REDO;
+    return Command.values()[rand.nextInt(Command.PICKUP.ordinal() + 1)];
+  }
+}
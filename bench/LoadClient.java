@@ -0,0 +1,213 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator for GameServer: opens many sessions at once and plays random commands on all of them.
+ * <P>
+ * Every session connects and reads its greeting first, so all of them are open on the server together; then they
+ * all start sending lines of random commands, each waiting for the server's reply before sending the next, and
+ * finally quit. Sessions run on virtual threads where the JVM has them. Reports how long it took to open the
+ * sessions, commands/sec across all sessions, reply latency percentiles, and errors.
+ * <P>
+ * Usage: java -cp out LoadClient [--port n | --unix path] [--sessions n] [--lines n] [--batch n] [--think ms]
+ * <P>
+ * --lines is the number of lines each session sends, --batch the commands per line, and --think a pause between
+ * lines, to hold sessions open the way real players do.
+ *
+ * @version 1.0
+ */
+public class LoadClient
+{
+  // commands a random player sends: moves, jumps, and pickups
+  private static final String[] WORDS = { "r", "l", "u", "d", "jr", "jl", "ju", "jd", "p" };
+  private static final String USAGE = "Usage: java -cp out LoadClient [--port n | --unix path] [--sessions n]"
+                                      + " [--lines n] [--batch n] [--think ms]";
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    int port = GameServer.DEFAULT_PORT;
+    String unixPath = null;
+    int sessions = 1000;
+    int lines = 100;
+    int batch = 1;
+    long thinkMs = 0;
+    String option = null;
+    try {
+      for (int i = 0; i < args.length; i++)
+      {
+        option = args[i];
+        switch (option)
+        {
+          case "--port": port = Integer.parseInt(value(args, ++i)); break;
+          case "--unix": unixPath = value(args, ++i); break;
+          case "--sessions": sessions = Integer.parseInt(value(args, ++i)); break;
+          case "--lines": lines = Integer.parseInt(value(args, ++i)); break;
+          case "--batch": batch = Integer.parseInt(value(args, ++i)); break;
+          case "--think": thinkMs = Long.parseLong(value(args, ++i)); break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + option);
+        }
+      }
+      if (sessions < 1 || lines < 1 || batch < 1)
+        throw new IllegalArgumentException("--sessions, --lines, and --batch expect a positive number");
+      if (thinkMs < 0)
+        throw new IllegalArgumentException("--think expects 0 or more milliseconds");
+    } catch (NumberFormatException e) {
+      System.err.println(option + " expects a number");
+      System.err.println(USAGE);
+      System.exit(2);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+
+    final String path = unixPath;
+    final int p = port;
+    final int n = lines;
+    final int b = batch;
+    final long think = thinkMs;
+    // reply latencies in ns, lines per session, one run per session
+    final long[] latencies = new long[sessions * lines];
+    final AtomicInteger errors = new AtomicInteger();
+    final AtomicInteger connected = new AtomicInteger();
+    final CountDownLatch open = new CountDownLatch(sessions);
+    final CountDownLatch go = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(sessions);
+
+    ExecutorService threads = GameServer.newSessionExecutor("client-");
+    long start = System.nanoTime();
+    for (int s = 0; s < sessions; s++)
+    {
+      final int id = s;
+      // a session counts as open once, whether it connected or failed trying
+      final AtomicBoolean ready = new AtomicBoolean();
+      final Runnable markOpen = () -> {
+        if (ready.compareAndSet(false, true))
+          open.countDown();
+      };
+      threads.execute(() -> {
+        try {
+          play(path, p, id, n, b, think, latencies, markOpen, go, connected);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+          if (errors.getAndIncrement() < 5)
+            System.err.println("session " + id + ": " + e);
+        } finally {
+          markOpen.run();
+          done.countDown();
+        }
+      });
+    }
+    open.await();
+    long opened = System.nanoTime();
+    go.countDown();
+    done.await();
+    long end = System.nanoTime();
+    threads.shutdown();
+    threads.awaitTermination(10, TimeUnit.SECONDS);
+
+    long[] sorted = latencies.clone();
+    Arrays.sort(sorted);
+    // sessions that failed left zeros; skip them
+    int from = 0;
+    while (from < sorted.length && sorted[from] == 0)
+      from++;
+    int count = sorted.length - from;
+    System.out.printf("sessions=%d connected=%d errors=%d (%s)%n", sessions, connected.get(), errors.get(),
+                      GameServer.isVirtualThreadSupported() ? "virtual threads" : "platform threads");
+    System.out.printf("open all sessions: %.1f ms%n", (opened - start) / 1e6);
+    System.out.printf("commands/sec: %.0f over %.1f ms%n", (double)count * batch * 1e9 / (end - opened),
+                      (end - opened) / 1e6);
+    if (count > 0)
+      System.out.printf("reply latency us: p50=%.0f p90=%.0f p99=%.0f max=%.0f%n", pct(sorted, from, 0.50),
+                        pct(sorted, from, 0.90), pct(sorted, from, 0.99), sorted[sorted.length - 1] / 1e3);
+  }
+
+  /*
+   * One session: connect, read the greeting, wait for every other session to be open, then send lines of random
+   * commands and quit.
+   */
+  private static void play(String unixPath, int port, int id, int lines, int batch, long thinkMs, long[] latencies,
+                           Runnable markOpen, CountDownLatch go, AtomicInteger connected)
+      throws IOException, InterruptedException
+  {
+    try (SocketChannel ch = GameServer.connect(unixPath, port)) {
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8), 512);
+      Writer out = new OutputStreamWriter(Channels.newOutputStream(ch), StandardCharsets.UTF_8);
+      String hello = in.readLine();
+      if (hello == null || !hello.startsWith("WELCOME"))
+        throw new IOException("unexpected greeting " + hello);
+      connected.incrementAndGet();
+      markOpen.run();
+      go.await();
+
+      SplittableRandom rand = new SplittableRandom(id);
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < lines; i++)
+      {
+        line.setLength(0);
+        for (int k = 0; k < batch; k++)
+          line.append(k == 0 ? "" : " ").append(WORDS[rand.nextInt(WORDS.length)]);
+        line.append('\n');
+        long t = System.nanoTime();
+        out.append(line);
+        out.flush();
+        String reply = readReply(in);
+        latencies[id * lines + i] = Math.max(1, System.nanoTime() - t);
+        if (!reply.startsWith("OK"))
+          throw new IOException("unexpected reply " + reply);
+        if (thinkMs > 0)
+          Thread.sleep(thinkMs);
+      }
+      out.append("q\n");
+      out.flush();
+      String bye = readReply(in);
+      if (!bye.startsWith("BYE"))
+        throw new IOException("unexpected reply " + bye);
+    }
+  }
+
+  /*
+   * The value following an option, or an IllegalArgumentException naming the option if there is none
+   */
+  private static String value(String[] args, int i)
+  {
+    if (i >= args.length)
+      throw new IllegalArgumentException(args[i - 1] + " needs a value");
+    return args[i];
+  }
+
+  /*
+   * Skip event messages up to the line that ends the reply.
+   */
+  private static String readReply(BufferedReader in) throws IOException
+  {
+    String s;
+    while ((s = in.readLine()) != null)
+    {
+      if (s.startsWith("OK") || s.startsWith("BYE") || s.startsWith("ERR"))
+        return s;
+    }
+    throw new IOException("server closed the connection");
+  }
+
+  private static double pct(long[] sorted, int from, double q)
+  {
+    int i = from + (int)Math.min(sorted.length - from - 1, (long)((sorted.length - from) * q));
+    return sorted[i] / 1e3;
+  }
+}
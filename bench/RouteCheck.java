@@ -0,0 +1,143 @@
+import java.util.List;
+
+/**
+ * Check for RouteSolver: solves many generated boards, plays every route it returns on a fresh engine through the
+ * console command parser, and fails unless the route reaches the far right column with exactly the steps and final
+ * score the solver promised. Also checks the solver agrees with the plain fewestSteps() search on which boards can
+ * be solved and in how many steps, then times a solve of the default board.
+ * <P>
+ * Any difference is reported and the check exits with status 1.
+ * <P>
+ * Usage: java -cp out RouteCheck [--boards n] [--seed n]
+ *
+ * @version 1.0
+ */
+public class RouteCheck
+{
+  // board sizes and {walls, traps, prizes} configurations; the last is too large for the full state search
+  private static final int[][] SIZES = { {8, 5}, {8, 5}, {16, 10}, {64, 40} };
+  private static final int[][] CONFIGS = { {20, 5, 3}, {10, 8, 6}, {60, 6, 6}, {1280, 320, 192} };
+
+  // results are folded into this field so the JIT cannot discard the work being measured
+  static volatile int sink;
+
+  public static void main(String[] args)
+  {
+    int boards = 500;
+    long seed = 1;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--boards": boards = Integer.parseInt(args[++i]); break;
+        case "--seed": seed = Long.parseLong(args[++i]); break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    RouteSolver solver = new RouteSolver();
+    for (int k = 0; k < SIZES.length; k++)
+    {
+      int solvable = 0;
+      for (int b = 0; b < boards; b++)
+      {
+        long boardSeed = BoardAnalyzer.boardSeed(seed + k, b);
+        GameEngine engine = newEngine(SIZES[k], CONFIGS[k], boardSeed);
+        RouteSolver.Solution s = solver.solve(engine);
+        String failure = check(s, SIZES[k], CONFIGS[k], boardSeed);
+        if (failure != null)
+        {
+          System.out.println("FAIL " + SIZES[k][0] + "x" + SIZES[k][1] + " seed " + boardSeed + ": " + failure);
+          System.exit(1);
+        }
+        if (s.isSolvable())
+          solvable++;
+      }
+      System.out.printf("ok   %dx%d %s %d boards, %d solvable%n", SIZES[k][0], SIZES[k][1],
+                        CONFIGS[k][0] + "/" + CONFIGS[k][1] + "/" + CONFIGS[k][2], boards, solvable);
+    }
+    measure(seed);
+  }
+
+  /*------------------- harness -------------------*/
+
+  /*
+   * Check one board's solution against the plain search and by playing its routes; null if all is well
+   */
+  private static String check(RouteSolver.Solution s, int[] size, int[] config, long boardSeed)
+  {
+    Board board = newEngine(size, config, boardSeed).getBoard();
+    int cells = board.getCellCount();
+    int steps = RouteSolver.fewestSteps(board, new int[cells], new int[cells]);
+    if (s.isSolvable() != (steps >= 0))
+      return "solvable " + s.isSolvable() + ", fewestSteps() " + steps;
+    if (!s.isSolvable())
+      return null;
+    if (s.getFewestSteps().getSteps() != steps)
+      return "fewest-steps route takes " + s.getFewestSteps().getSteps() + ", fewestSteps() " + steps;
+
+    String failure = play(s.getFewestSteps(), size, config, boardSeed);
+    if (failure != null)
+      return "fewest-steps route " + failure;
+    RouteSolver.Route best = s.getBestScore();
+    if (best == null)
+      return null;
+    if (best.getScore() < s.getFewestSteps().getScore())
+      return "best-score route scores less than the fewest-steps route";
+    failure = play(best, size, config, boardSeed);
+    return failure != null ? "best-score route " + failure : null;
+  }
+
+  /*
+   * Enter a route's commands on a fresh engine, as a player would type them
+   */
+  private static String play(RouteSolver.Route route, int[] size, int[] config, long boardSeed)
+  {
+    GameEngine engine = newEngine(size, config, boardSeed);
+    List<Command> commands = UserInput.parseCommands(String.join(" ", route.getCommands()));
+    if (commands == null)
+      return "has a command the console doesn't accept: " + route;
+    for (Command c : commands)
+      c.apply(engine);
+    if (engine.getPlayerCol() != engine.getBoard().getCols() - 1)
+      return "ends in column " + engine.getPlayerCol() + ": " + route;
+    if (engine.getSteps() != route.getSteps())
+      return "takes " + engine.getSteps() + " steps, promised " + route.getSteps() + ": " + route;
+    int score = engine.getScore() + engine.endGame();
+    if (score != route.getScore())
+      return "scores " + score + ", promised " + route.getScore() + ": " + route;
+    return null;
+  }
+
+  /*
+   * Time an uncached solve of the default board
+   */
+  private static void measure(long seed)
+  {
+    int solves = 0;
+    long start = System.nanoTime();
+    long end = start + 1000000000L;
+    long now;
+    while ((now = System.nanoTime()) < end || solves < 100)
+    {
+      GameEngine engine = newEngine(SIZES[0], CONFIGS[0], BoardAnalyzer.boardSeed(seed, solves));
+      RouteSolver.Solution s = new RouteSolver().solve(engine);
+      sink += s.isSolvable() ? s.getFewestSteps().getSteps() : 0;
+      solves++;
+    }
+    System.out.printf("solve 8x5, uncached: %.3f ms%n", (now - start) / 1e6 / solves);
+  }
+
+  private static GameEngine newEngine(int[] size, int[] config, long seed)
+  {
+    GameEngine engine = new GameEngine(size[0], size[1]);
+    engine.setWalls(config[0]);
+    engine.setTraps(config[1]);
+    engine.setPrizes(config[2]);
+    engine.createBoard(seed);
+    engine.replay();
+    return engine;
+  }
+}
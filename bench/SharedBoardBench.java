@@ -0,0 +1,245 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Contention benchmark for SharedBoard: several players on one board, each moved by its own thread.
+ * <P>
+ * First every player count is checked for double claims: all players start together and play the same walk, so
+ * they land on the same cells at the same moment and race for every trap and prize. The coins the players end up
+ * with must add up to exactly the prizes that left the board, and never to more than the board had. Any difference
+ * is reported and the harness exits with status 1.
+ * <P>
+ * Then each player count is timed with players on independent random walks, reporting commands/sec across all
+ * players. --locked takes one monitor around every command instead, the way a single GameGUI or engine lock would
+ * serialize them, for comparison.
+ * <P>
+ * Usage: java -cp out SharedBoardBench [--players 1,2,4,8] [--size WxH] [--time ms] [--iterations n] [--locked]
+ *
+ * @version 1.0
+ */
+public class SharedBoardBench
+{
+  // commands per player in each double-claim race
+  private static final int RACE_COMMANDS = 20000;
+  private static final int RACES = 20;
+
+  // results are folded into this field so the JIT cannot discard the work being measured
+  static volatile int sink;
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    int[] playerCounts = { 1, 2, 4, 8 };
+    int cols = 256;
+    int rows = 256;
+    long timeMs = 1000;
+    int iterations = 3;
+    boolean locked = false;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--players":
+          String[] p = args[++i].split(",");
+          playerCounts = new int[p.length];
+          for (int k = 0; k < p.length; k++)
+            playerCounts[k] = Integer.parseInt(p[k]);
+          break;
+        case "--size":
+          String[] size = args[++i].toLowerCase().split("x");
+          cols = Integer.parseInt(size[0]);
+          rows = Integer.parseInt(size[1]);
+          break;
+        case "--time": timeMs = Long.parseLong(args[++i]); break;
+        case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+        case "--locked": locked = true; break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          return;
+      }
+    }
+
+    int failures = 0;
+    for (int players : playerCounts)
+    {
+      for (int r = 0; r < RACES; r++)
+      {
+        String problem = race(cols, rows, players, r);
+        if (problem != null)
+        {
+          System.out.println("FAIL " + players + " players, race " + r + ": " + problem);
+          failures++;
+        }
+      }
+    }
+    System.out.println(failures == 0 ? "no double claims in " + RACES * playerCounts.length + " races"
+                                     : failures + " races failed");
+    if (failures > 0)
+      System.exit(1);
+
+    System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + cols + "x" + rows + " board"
+                       + (locked ? ", one lock around every command" : ", no locks"));
+    System.out.printf("%-8s %16s %12s%n", "players", "commands/sec", "per player");
+    for (int players : playerCounts)
+    {
+      double best = 0;
+      for (int i = 0; i < iterations; i++)
+        best = Math.max(best, throughput(cols, rows, players, timeMs, locked));
+      System.out.printf("%-8d %16.0f %12.0f%n", players, best, best / players);
+    }
+  }
+
+  /*
+   * Race players along the same walk on a fresh board. Returns a description of the problem, or null if the
+   * coins collected match the prizes taken.
+   */
+  private static String race(int cols, int rows, int players, final int walk) throws InterruptedException
+  {
+    final SharedBoard board = new SharedBoard(newEngine(cols, rows, walk));
+    int prizesBefore = board.getRemainingPrizes();
+    final SharedBoard.Player[] p = new SharedBoard.Player[players];
+    for (int i = 0; i < players; i++)
+      p[i] = board.newPlayer();
+    run(p, () -> 0, (player, id, deadline) -> {
+      SplittableRandom rand = new SplittableRandom(walk);
+      for (int k = 0; k < RACE_COMMANDS; k++)
+        player.apply(nextCommand(rand));
+      return RACE_COMMANDS;
+    });
+
+    int coins = 0;
+    for (SharedBoard.Player player : p)
+      coins += player.getCoinsCollected();
+    int taken = prizesBefore - board.getRemainingPrizes();
+    if (coins != taken || taken > prizesBefore)
+      return "players collected " + coins + " coins but " + taken + " of " + prizesBefore + " prizes were taken";
+    return null;
+  }
+
+  /*
+   * Commands/sec across all players on independent walks for timeMs.
+   */
+  private static double throughput(int cols, int rows, int players, final long timeMs, final boolean locked)
+      throws InterruptedException
+  {
+    final SharedBoard board = new SharedBoard(newEngine(cols, rows, 42));
+    final Object monitor = new Object();
+    SharedBoard.Player[] p = new SharedBoard.Player[players];
+    for (int i = 0; i < players; i++)
+      p[i] = board.newPlayer();
+    final long[] start = new long[1];
+    long ops = run(p, () -> start[0] = System.nanoTime(), (player, id, deadline) -> {
+      SplittableRandom rand = new SplittableRandom(id);
+      long n = 0;
+      int acc = 0;
+      do
+      {
+        // check the clock every 1024 commands, so reading it doesn't dominate
+        for (int k = 0; k < 1024; k++)
+        {
+          Command c = nextCommand(rand);
+          if (locked)
+          {
+            synchronized (monitor)
+            {
+              acc += player.apply(c);
+            }
+          }
+          else
+            acc += player.apply(c);
+        }
+        n += 1024;
+      }
+      while (System.nanoTime() < deadline);
+      sink = acc;
+      return n;
+    }, timeMs);
+    return ops * 1e9 / (System.nanoTime() - start[0]);
+  }
+
+  /*------------------- harness -------------------*/
+
+  interface Walk
+  {
+    long play(SharedBoard.Player player, int id, long deadline);
+  }
+
+  interface Start
+  {
+    long start();
+  }
+
+  private static long run(SharedBoard.Player[] players, Start start, Walk walk) throws InterruptedException
+  {
+    return run(players, start, walk, 0);
+  }
+
+  /*
+   * Play every player on its own thread, all released at once. Returns the total number of commands applied.
+   */
+  private static long run(SharedBoard.Player[] players, Start start, final Walk walk, long timeMs)
+      throws InterruptedException
+  {
+    final CountDownLatch ready = new CountDownLatch(players.length);
+    final CountDownLatch go = new CountDownLatch(1);
+    final long[] counts = new long[players.length];
+    final long[] deadline = new long[1];
+    Thread[] threads = new Thread[players.length];
+    for (int i = 0; i < players.length; i++)
+    {
+      final int id = i;
+      final SharedBoard.Player player = players[i];
+      threads[i] = new Thread(() -> {
+        ready.countDown();
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        counts[id] = walk.play(player, id, deadline[0]);
+      });
+      threads[i].start();
+    }
+    ready.await();
+    start.start();
+    deadline[0] = System.nanoTime() + timeMs * 1000000L;
+    // the latch publishes deadline to the players
+    go.countDown();
+    long total = 0;
+    for (int i = 0; i < threads.length; i++)
+    {
+      threads[i].join();
+      total += counts[i];
+    }
+    return total;
+  }
+
+  /*
+   * A board with five times the default item density, so claims are frequent
+   */
+  private static GameEngine newEngine(int cols, int rows, long seed)
+  {
+    int cells = cols * rows;
+    GameEngine engine = new GameEngine(cols, rows);
+    engine.setWalls(20 * cells / 40);
+    engine.setTraps(25 * cells / 40);
+    engine.setPrizes(15 * cells / 40);
+    engine.createBoard(seed);
+    engine.replay();
+    return engine;
+  }
+
+  /*
+   * Moves and pickups only: REPLAY would clear a player's coins and spoil the count.
+   */
+  private static Command nextCommand(SplittableRandom rand)
+  {
+    int r = rand.nextInt(10);
+    if (r < 3) return Command.RIGHT;
+    if (r < 5) return Command.DOWN;
+    if (r < 6) return Command.LEFT;
+    if (r < 7) return Command.UP;
+    if (r < 8) return Command.JUMP_RIGHT;
+    if (r < 9) return Command.JUMP_DOWN;
+    return Command.PICKUP;
+  }
+}
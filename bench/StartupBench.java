@@ -0,0 +1,144 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-to-first-frame benchmark: starts fresh JVMs that create a game window and paint it, and reports how long
+ * after JVM start the first frame was painted, and the first frame with every image rather than placeholders.
+ * <P>
+ * Each run is a new JVM, so class loading, image decoding, and the empty asset cache are measured the way a player
+ * meets them. Windows are painted into an offscreen image, so the harness runs headless. Two modes are run:
+ * async, the way GameGUI starts (images load in the background and placeholders are painted meanwhile), and
+ * blocking, which waits for every image before creating the window, the way the window used to start. Reports the
+ * minimum and median of each measurement over the runs, plus how long each image took to load.
+ * <P>
+ * Usage: java -cp out StartupBench [--runs n]
+ * <P>
+ * Run it from the repository root so the images load.
+ *
+ * @version 1.0
+ */
+public class StartupBench
+{
+  private static final String[] IMAGES = { "grid.png", "coin.png", "player.png" };
+  private static final String RESULT = "RESULT";
+
+  public static void main(String[] args) throws IOException, InterruptedException
+  {
+    int runs = 10;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--runs": runs = Integer.parseInt(args[++i]); break;
+        case "--child": child(Boolean.parseBoolean(args[++i])); return;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          return;
+      }
+    }
+
+    System.out.printf("%-9s %22s %22s%s%n", "mode", "first frame ms", "with images ms", imageHeader());
+    System.out.printf("%-9s %11s %10s %11s %10s%n", "", "min", "median", "min", "median");
+    for (boolean blocking : new boolean[] { false, true })
+    {
+      List<double[]> results = new ArrayList<double[]>();
+      for (int r = 0; r < runs; r++)
+        results.add(runChild(blocking));
+      int columns = results.get(0).length;
+      StringBuilder line = new StringBuilder(String.format("%-9s", blocking ? "blocking" : "async"));
+      for (int c = 0; c < columns; c++)
+      {
+        double[] values = new double[results.size()];
+        for (int r = 0; r < values.length; r++)
+          values[r] = results.get(r)[c];
+        Arrays.sort(values);
+        if (c < 2)
+          line.append(String.format(" %11.0f %10.0f", values[0], values[values.length / 2]));
+        else
+          line.append(String.format(" %10.1f", values[values.length / 2]));
+      }
+      System.out.println(line);
+    }
+  }
+
+  /*------------------- harness -------------------*/
+
+  /*
+   * Median image load times get a column each
+   */
+  private static String imageHeader()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (String name : IMAGES)
+      sb.append(String.format(" %10s", name));
+    return sb.toString();
+  }
+
+  /*
+   * Start a JVM running child() and return its {first frame, first full frame, image load times...}
+   */
+  private static double[] runChild(boolean blocking) throws IOException, InterruptedException
+  {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder pb = new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp",
+                                           System.getProperty("java.class.path"), "StartupBench", "--child",
+                                           Boolean.toString(blocking));
+    pb.redirectErrorStream(true);
+    Process p = pb.start();
+    double[] result = null;
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+      for (String line = in.readLine(); line != null; line = in.readLine())
+      {
+        if (line.startsWith(RESULT))
+        {
+          String[] f = line.substring(RESULT.length()).trim().split(" ");
+          result = new double[f.length];
+          for (int i = 0; i < f.length; i++)
+            result[i] = Double.parseDouble(f[i]);
+        }
+        else
+          System.err.println(line);
+      }
+    }
+    if (p.waitFor() != 0 || result == null)
+      throw new IllegalStateException("startup run failed");
+    return result;
+  }
+
+  /*
+   * One run: create a window for the default board and paint it until a frame with every image is painted, then
+   * print the RESULT line
+   */
+  private static void child(boolean blocking) throws InterruptedException
+  {
+    if (blocking)
+      GameGUI.preloadAssets().join();
+    GameEngine engine = new GameEngine();
+    engine.createBoard(1);
+    engine.replay();
+    GameGUI gui = new GameGUI(engine);
+    gui.setSize(gui.getPreferredSize());
+    BufferedImage frame = new BufferedImage(gui.getWidth(), gui.getHeight(), BufferedImage.TYPE_INT_RGB);
+    while (gui.getFirstFullFrameMillis() < 0)
+    {
+      Graphics2D g = frame.createGraphics();
+      gui.paintComponent(g);
+      g.dispose();
+      if (gui.getFirstFullFrameMillis() < 0)
+        Thread.sleep(1);
+    }
+
+    StringBuilder sb = new StringBuilder(RESULT);
+    sb.append(' ').append(gui.getFirstFrameMillis()).append(' ').append(gui.getFirstFullFrameMillis());
+    for (String name : IMAGES)
+      sb.append(' ').append(AssetManager.getShared().getLoadMillis(name));
+    System.out.println(sb);
+  }
+}
@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Golden-trace regression harness: replays a corpus of recorded games headlessly and checks that the rules still
+ * produce exactly the recorded results, then measures how fast they replay.
+ * <P>
+ * The corpus is a directory of GameJournal files plus golden.txt, which lists the final score, steps, and coins
+ * of each trace after endGame(), as EscapeRoom prints them. Every trace is first replayed through Command.apply,
+ * the same path GameGUI.movePlayer, pickupPrize, and replay take, checking each command's score change against the
+ * journal and the final counters against golden.txt. Any difference is reported and the harness exits with
+ * status 1, so hot-path changes that alter scoring can't go unnoticed.
+ * <P>
+ * The traces are then replayed in a timed loop from decoded command arrays, reporting commands/sec and bytes
+ * allocated per command (when the JVM can count allocations).
+ * <P>
+ * Usage: java -cp out TraceRegression [--traces dir] [--warmup n] [--iterations n] [--time ms]
+ *                                      [--generate n] [--update]
+ * <P>
+ * --generate writes n synthetic traces (random walks over several board sizes and configurations) into the
+ * corpus, and --update rewrites golden.txt from the current rules; use them only when scoring is meant to change.
+ *
+ * @version 1.0
+ */
+public class TraceRegression
+{
+  private static final String GOLDEN = "golden.txt";
+  // board sizes and {walls, traps, prizes} configurations cycled through by --generate
+  private static final int[][] SIZES = { {8, 5}, {8, 5}, {16, 10}, {32, 20} };
+  private static final int[][] CONFIGS = { {20, 5, 3}, {40, 8, 6}, {80, 20, 12}, {320, 80, 48} };
+  private static final int GENERATED_COMMANDS = 3000;
+
+  // results are folded into this field so the JIT cannot discard the work being measured
+  static volatile int sink;
+
+  /*
+   * A decoded trace: the journal header and its commands.
+   */
+  private static class Trace
+  {
+    final GameJournal.Reader header;
+    final Command[] commands;
+
+    Trace(GameJournal.Reader header, Command[] commands)
+    {
+      this.header = header;
+      this.commands = commands;
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    Path dir = Paths.get("bench", "traces");
+    int warmup = 3;
+    int iterations = 5;
+    long timeMs = 500;
+    int generate = 0;
+    boolean update = false;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--traces": dir = Paths.get(args[++i]); break;
+        case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+        case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+        case "--time": timeMs = Long.parseLong(args[++i]); break;
+        case "--generate": generate = Integer.parseInt(args[++i]); break;
+        case "--update": update = true; break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          return;
+      }
+    }
+
+    if (generate > 0)
+      generate(dir, generate);
+    List<Path> files = listTraces(dir);
+    if (files.isEmpty())
+    {
+      System.err.println("No traces in " + dir);
+      System.exit(1);
+    }
+    if (update || generate > 0)
+      writeGolden(dir, files);
+
+    // correctness first: a fast replay of the wrong rules is worthless
+    Map<String, int[]> golden = readGolden(dir);
+    int failures = 0;
+    List<Trace> traces = new ArrayList<Trace>();
+    long commands = 0;
+    for (Path f : files)
+    {
+      String name = f.getFileName().toString();
+      String problem = verify(f, golden.get(name));
+      if (problem != null)
+      {
+        System.out.println("FAIL " + name + ": " + problem);
+        failures++;
+      }
+      Trace t = decode(f);
+      traces.add(t);
+      commands += t.commands.length;
+    }
+    System.out.println(files.size() - failures + "/" + files.size() + " traces match " + GOLDEN + " ("
+                       + commands + " commands)");
+    if (failures > 0)
+      System.exit(1);
+
+    for (int i = 0; i < warmup; i++)
+      iteration(traces, timeMs);
+    System.out.printf("%-10s %16s %14s%n", "iteration", "commands/sec", "bytes/command");
+    for (int i = 0; i < iterations; i++)
+    {
+      double[] r = iteration(traces, timeMs);
+      System.out.printf("%-10d %16.0f %14s%n", i + 1, r[0], r[1] < 0 ? "n/a" : String.format("%.2f", r[1]));
+    }
+  }
+
+  /*------------------- harness -------------------*/
+
+  /*
+   * Replay a trace with per-command checking, end the game, and compare with the golden {score, steps, coins}.
+   * Returns a description of the first difference, or null if there is none.
+   */
+  private static String verify(Path file, int[] expected)
+  {
+    if (expected == null)
+      return "not listed in " + GOLDEN;
+    GameEngine engine;
+    try {
+      engine = GameJournal.replay(file);
+    } catch (IOException | IllegalStateException e) {
+      return e.getMessage();
+    }
+    engine.addToScore(engine.endGame());
+    int[] actual = { engine.getScore(), engine.getSteps(), engine.getCoinsCollected() };
+    if (actual[0] != expected[0] || actual[1] != expected[1] || actual[2] != expected[2])
+      return "score/steps/coins " + actual[0] + "/" + actual[1] + "/" + actual[2] + ", expected "
+             + expected[0] + "/" + expected[1] + "/" + expected[2];
+    return null;
+  }
+
+  /*
+   * Replay every trace from the start of its board until timeMs has elapsed. Returns {commands/sec, bytes
+   * allocated per command, or -1 if the JVM doesn't count allocations}. Boards are generated before the clock
+   * starts, so only the commands are measured; each pass puts the items and player back with replay() and drops
+   * the undo history, which leaves the engine as createBoard() and replay() would.
+   */
+  private static double[] iteration(List<Trace> traces, long timeMs)
+  {
+    List<GameEngine> engines = new ArrayList<GameEngine>();
+    for (Trace t : traces)
+      engines.add(t.header.createEngine());
+
+    long bytesBefore = allocatedBytes();
+    long deadline = System.nanoTime() + timeMs * 1000000L;
+    long ops = 0;
+    int acc = 0;
+    long start = System.nanoTime();
+    long now;
+    do
+    {
+      for (int i = 0; i < traces.size(); i++)
+      {
+        Trace t = traces.get(i);
+        GameEngine engine = engines.get(i);
+        engine.replay();
+        engine.clearUndo();
+        for (Command c : t.commands)
+          acc += c.apply(engine);
+        acc += engine.endGame();
+        ops += t.commands.length;
+      }
+      now = System.nanoTime();
+    }
+    while (now < deadline);
+    long bytesAfter = allocatedBytes();
+    sink = acc;
+    double bytes = bytesBefore < 0 ? -1 : (double)(bytesAfter - bytesBefore) / ops;
+    return new double[] { ops * 1e9 / (now - start), bytes };
+  }
+
+  /*
+   * Bytes allocated by this thread so far, or -1 if the JVM can't tell.
+   */
+  private static long allocatedBytes()
+  {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean))
+      return -1;
+    com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean)bean;
+    if (!b.isThreadAllocatedMemorySupported() || !b.isThreadAllocatedMemoryEnabled())
+      return -1;
+    return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static Trace decode(Path file) throws IOException
+  {
+    GameJournal.Reader r = new GameJournal.Reader(file);
+    List<Command> commands = new ArrayList<Command>();
+    while (r.next())
+      commands.add(r.getCommand());
+    return new Trace(r, commands.toArray(new Command[commands.size()]));
+  }
+
+  /*------------------- corpus -------------------*/
+
+  private static List<Path> listTraces(Path dir) throws IOException
+  {
+    List<Path> files = new ArrayList<Path>();
+    if (!Files.isDirectory(dir))
+      return files;
+    try (DirectoryStream<Path> s = Files.newDirectoryStream(dir, "*.erj")) {
+      for (Path p : s)
+        files.add(p);
+    }
+    files.sort(null);
+    return files;
+  }
+
+  /*
+   * golden.txt: one "name score steps coins" line per trace; blank lines and # comments are ignored
+   */
+  private static Map<String, int[]> readGolden(Path dir) throws IOException
+  {
+    Map<String, int[]> golden = new HashMap<String, int[]>();
+    Path file = dir.resolve(GOLDEN);
+    if (!Files.exists(file))
+      return golden;
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+    {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#"))
+        continue;
+      String[] f = line.split("\\s+");
+      golden.put(f[0], new int[] { Integer.parseInt(f[1]), Integer.parseInt(f[2]), Integer.parseInt(f[3]) });
+    }
+    return golden;
+  }
+
+  private static void writeGolden(Path dir, List<Path> files) throws IOException
+  {
+    List<String> lines = new ArrayList<String>();
+    lines.add("# trace score steps coins, after endGame(); regenerate with TraceRegression --update");
+    for (Path f : files)
+    {
+      GameEngine engine = GameJournal.replay(f);
+      engine.addToScore(engine.endGame());
+      lines.add(f.getFileName() + " " + engine.getScore() + " " + engine.getSteps() + " "
+                + engine.getCoinsCollected());
+    }
+    Files.write(dir.resolve(GOLDEN), lines, StandardCharsets.UTF_8);
+    System.out.println("Wrote " + dir.resolve(GOLDEN));
+  }
+
+  /*
+   * Record n synthetic games: walks that mostly head right, pick up prizes they land on, and now and then
+   * undo, redo, or replay, so every command and every scoring path appears in the corpus.
+   */
+  private static void generate(Path dir, int n) throws IOException
+  {
+    Files.createDirectories(dir);
+    for (int i = 0; i < n; i++)
+    {
+      int[] size = SIZES[i % SIZES.length];
+      int[] config = CONFIGS[(i / SIZES.length) % CONFIGS.length];
+      GameEngine engine = new GameEngine(size[0], size[1]);
+      engine.setSolvable(i % 3 == 0);
+      engine.setWalls(Math.min(config[0], size[0] * size[1]));
+      engine.setTraps(config[1]);
+      engine.setPrizes(config[2]);
+      engine.createBoard(1000 + i);
+      engine.replay();
+
+      SplittableRandom rand = new SplittableRandom(i);
+      Path file = dir.resolve(String.format("trace-%03d.erj", i));
+      try (GameJournal journal = new GameJournal(file, engine)) {
+        for (int k = 0; k < GENERATED_COMMANDS; k++)
+        {
+          Command c = nextCommand(engine, rand);
+          journal.record(c, c.apply(engine));
+        }
+      }
+    }
+    System.out.println("Wrote " + n + " traces to " + dir);
+  }
+
+  private static Command nextCommand(GameEngine engine, SplittableRandom rand)
+  {
+    Board board = engine.getBoard();
+    if (board.hasPrize(board.cell(engine.getPlayerCol(), engine.getPlayerRow())) && rand.nextInt(4) != 0)
+      return Command.PICKUP;
+    if (engine.getPlayerCol() == board.getCols() - 1 && rand.nextInt(2) == 0)
+      return Command.REPLAY;
+    int r = rand.nextInt(100);
+    if (r < 30) return Command.RIGHT;
+    if (r < 45) return Command.DOWN;
+    if (r < 60) return Command.UP;
+    if (r < 68) return Command.LEFT;
+    if (r < 75) return Command.JUMP_RIGHT;
+    if (r < 79) return Command.JUMP_DOWN;
+    if (r < 83) return Command.JUMP_UP;
+    if (r < 85) return Command.JUMP_LEFT;
+    if (r < 89) return Command.PICKUP;
+    if (r < 95) return Command.UNDO;
+    if (r < 99) return Command.REDO;
+    return Command.REPLAY;
+  }
+}
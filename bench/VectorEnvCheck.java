@@ -0,0 +1,155 @@
+import java.util.SplittableRandom;
+
+/**
+ * Differential check for VectorEnv: steps a batch of games in lockstep with one GameEngine per game, on the same
+ * boards and random actions, and fails if any reward, end of episode, location, score, steps, or coins differ. Then
+ * measures how many game steps per second the batch runs.
+ * <P>
+ * VectorEnv keeps its own struct-of-arrays copy of the movement, trap, prize, and end-of-episode rules, so run this
+ * after changing any of them in GameEngine. A difference is reported with the game and action it happened on, and
+ * the check exits with status 1.
+ * <P>
+ * Usage: java -cp out VectorEnvCheck [--envs n] [--steps n] [--max-steps n] [--seed n]
+ *
+ * @version 1.0
+ */
+public class VectorEnvCheck
+{
+  // board sizes and {walls, traps, prizes} configurations checked
+  private static final int[][] SIZES = { {8, 5}, {16, 10}, {32, 20} };
+  private static final int[][] CONFIGS = { {20, 5, 3}, {80, 20, 12}, {320, 80, 48} };
+
+  public static void main(String[] args)
+  {
+    int envs = 256;
+    int steps = 2000;
+    int maxSteps = 60;
+    long seed = 1;
+    for (int i = 0; i < args.length; i++)
+    {
+      switch (args[i])
+      {
+        case "--envs": envs = Integer.parseInt(args[++i]); break;
+        case "--steps": steps = Integer.parseInt(args[++i]); break;
+        case "--max-steps": maxSteps = Integer.parseInt(args[++i]); break;
+        case "--seed": seed = Long.parseLong(args[++i]); break;
+        default:
+          System.err.println("Unknown option " + args[i]);
+          System.exit(2);
+      }
+    }
+
+    boolean ok = true;
+    for (int i = 0; i < SIZES.length; i++)
+    {
+      boolean solvable = i % 2 == 0;
+      ok &= check(envs, SIZES[i][0], SIZES[i][1], CONFIGS[i], solvable, maxSteps, steps, seed + i);
+    }
+    if (!ok)
+      System.exit(1);
+
+    for (int i = 0; i < SIZES.length; i++)
+      measure(Math.max(envs, 16384), SIZES[i][0], SIZES[i][1], CONFIGS[i], maxSteps, seed + i);
+  }
+
+  /*------------------- harness -------------------*/
+
+  /*
+   * Step a VectorEnv and an engine per game together and compare every game after every step
+   */
+  private static boolean check(int envs, int cols, int rows, int[] config, boolean solvable, int maxSteps,
+                               int steps, long seed)
+  {
+    VectorEnv env = new VectorEnv(envs, cols, rows, config, solvable, maxSteps);
+    env.reset(seed);
+    GameEngine[] engines = new GameEngine[envs];
+    int[] actionCount = new int[envs];
+    for (int e = 0; e < envs; e++)
+    {
+      engines[e] = new GameEngine(cols, rows);
+      engines[e].setSolvable(solvable);
+      engines[e].setWalls(config[0]);
+      engines[e].setTraps(config[1]);
+      engines[e].setPrizes(config[2]);
+      engines[e].createBoard(BoardAnalyzer.boardSeed(seed, e));
+      engines[e].replay();
+    }
+
+    int[] actions = new int[envs];
+    int[] rewards = new int[envs];
+    boolean[] dones = new boolean[envs];
+    SplittableRandom rand = new SplittableRandom(seed);
+    long episodes = 0;
+    for (int s = 0; s < steps; s++)
+    {
+      for (int e = 0; e < envs; e++)
+        actions[e] = rand.nextInt(VectorEnv.NUM_ACTIONS);
+      env.step(actions, rewards, dones);
+
+      for (int e = 0; e < envs; e++)
+      {
+        // the episode rules VectorEnv documents, played on the engine
+        GameEngine g = engines[e];
+        int reward = Command.values()[actions[e]].applyRules(g);
+        actionCount[e]++;
+        boolean done = g.getPlayerCol() == cols - 1 || actionCount[e] >= maxSteps;
+        if (done)
+        {
+          reward += g.endGame();
+          g.replay();
+          actionCount[e] = 0;
+          episodes++;
+        }
+
+        String diff = null;
+        if (reward != rewards[e])
+          diff = "reward " + rewards[e] + ", engine " + reward;
+        else if (done != dones[e])
+          diff = "done " + dones[e] + ", engine " + done;
+        else if (g.getPlayerCol() != env.getPlayerCols()[e] || g.getPlayerRow() != env.getPlayerRows()[e])
+          diff = "at " + env.getPlayerCols()[e] + "," + env.getPlayerRows()[e] + ", engine " + g.getPlayerCol() + ","
+                 + g.getPlayerRow();
+        else if (g.getScore() != env.getScores()[e])
+          diff = "score " + env.getScores()[e] + ", engine " + g.getScore();
+        else if (g.getSteps() != env.getSteps()[e])
+          diff = "steps " + env.getSteps()[e] + ", engine " + g.getSteps();
+        else if (g.getCoinsCollected() != env.getCoinsCollected()[e])
+          diff = "coins " + env.getCoinsCollected()[e] + ", engine " + g.getCoinsCollected();
+        if (diff != null)
+        {
+          System.out.println("FAIL " + cols + "x" + rows + " game " + e + " step " + s + " "
+                             + Command.values()[actions[e]] + ": " + diff);
+          return false;
+        }
+      }
+    }
+    System.out.printf("ok   %dx%d %s %d games x %d steps, %d episodes%n", cols, rows,
+                      config[0] + "/" + config[1] + "/" + config[2], envs, steps, episodes);
+    return true;
+  }
+
+  /*
+   * Game steps per second for a large batch of random actions
+   */
+  private static void measure(int envs, int cols, int rows, int[] config, int maxSteps, long seed)
+  {
+    VectorEnv env = new VectorEnv(envs, cols, rows, config, false, maxSteps);
+    env.reset(seed);
+    int[] rewards = new int[envs];
+    boolean[] dones = new boolean[envs];
+    int[][] actions = new int[16][envs];
+    SplittableRandom rand = new SplittableRandom(seed);
+    for (int[] a : actions)
+      for (int e = 0; e < envs; e++)
+        a[e] = rand.nextInt(VectorEnv.NUM_ACTIONS);
+
+    int rounds = 0;
+    long start = System.nanoTime();
+    long end = start + 1000000000L;
+    long now;
+    while ((now = System.nanoTime()) < end || rounds < 50)
+      env.step(actions[rounds++ % actions.length], rewards, dones);
+    System.out.printf("%dx%d %d games: %.1fM steps/sec%n", cols, rows, envs,
+                      (double)rounds * envs / ((now - start) / 1e9) / 1e6);
+  }
+}